@@ -0,0 +1,217 @@
+package minecraftschurli.simpleorelib;
+
+import cpw.mods.modlauncher.serviceapi.ILaunchPluginService;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.material.Material;
+import net.minecraft.util.SharedSeedRandom;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.registry.Bootstrap;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.chunk.ChunkPrimer;
+import net.minecraft.world.chunk.UpgradeData;
+import net.minecraft.world.gen.feature.OreFeatureConfig;
+import net.minecraft.world.gen.surfacebuilders.SurfaceBuilder;
+import net.minecraftforge.fml.loading.RuntimeEnumExtender;
+import net.minecraftforge.registries.ForgeRegistries;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Helpers shared by the benchmarks: bootstrapping, synthetic {@link Biome Biomes} and {@link Ore Ores}, and a stub world
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+final class BenchmarkSupport {
+    private static final String FILLER_TYPE = "net.minecraft.world.gen.feature.OreFeatureConfig$FillerBlockType";
+
+    static {
+        extendFillerType();
+        Bootstrap.register();
+    }
+
+    private BenchmarkSupport() {}
+
+    /**
+     * Makes sure the vanilla registries are bootstrapped and {@link OreFeatureConfig.FillerBlockType#create} works
+     */
+    static void bootstrap() {}
+
+    /**
+     * Defines {@link OreFeatureConfig.FillerBlockType} with the transformation the mod launcher applies to extensible enums,
+     * so {@link SimpleOreLib#END_STONE} and other fillers can be created outside of the launcher.<br>
+     * This has to run before anything loads the enum, which is why it happens before the registries are bootstrapped.
+     */
+    private static void extendFillerType() {
+        ClassLoader loader = BenchmarkSupport.class.getClassLoader();
+        try (InputStream in = loader.getResourceAsStream(FILLER_TYPE.replace('.', '/') + ".class")) {
+            if (in == null) throw new IllegalStateException("Could not find " + FILLER_TYPE);
+            ClassNode node = new ClassNode();
+            new ClassReader(in).accept(node, 0);
+            new RuntimeEnumExtender().processClass(ILaunchPluginService.Phase.AFTER, node, Type.getObjectType(node.name));
+            ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+                @Override
+                protected String getCommonSuperClass(String first, String second) {
+                    return "java/lang/Object";
+                }
+            };
+            node.accept(writer);
+            byte[] bytes = writer.toByteArray();
+            Method define = ClassLoader.class.getDeclaredMethod("defineClass", String.class, byte[].class, int.class, int.class);
+            define.setAccessible(true);
+            define.invoke(loader, FILLER_TYPE, bytes, 0, bytes.length);
+        } catch (IOException | ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not extend " + FILLER_TYPE, e);
+        }
+    }
+
+    /**
+     * Gets all registered {@link Biome Biomes} in registry order
+     * @return all registered {@link Biome Biomes}
+     */
+    static List<Biome> registeredBiomes() {
+        List<Biome> biomes = new ArrayList<>();
+        ForgeRegistries.BIOMES.forEach(biomes::add);
+        return biomes;
+    }
+
+    /**
+     * Creates synthetic {@link Biome Biomes} that are not registered; compiled {@link BiomeFilter BiomeFilters} fall back to their predicate for these
+     * @param count the number of {@link Biome Biomes} to create
+     * @return the created {@link Biome Biomes}
+     */
+    static List<Biome> syntheticBiomes(int count) {
+        List<Biome> biomes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            biomes.add(new StubBiome(Biome.Category.values()[i % Biome.Category.values().length]));
+        }
+        return biomes;
+    }
+
+    /**
+     * Creates {@link Ore Ores} with varied spawn properties and filters, named {@code simpleorelib:benchmark_ore_<index>}
+     * @param count    the number of {@link Ore Ores} to create
+     * @param seed     the seed for the spawn properties
+     * @param veinType the {@link VeinType} of the {@link Ore Ores}
+     * @return the created {@link Ore Ores}
+     */
+    static List<Ore> ores(int count, long seed, VeinType veinType) {
+        Random random = new Random(seed);
+        BiomeFilter[] filters = {BiomeFilter.ALL, BiomeFilter.OVERWORLD, BiomeFilter.DESERT.or(BiomeFilter.BADLANDS), BiomeFilter.MOUNTAINS, BiomeFilter.OCEAN.negate()};
+        List<Ore> ores = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int minHeight = random.nextInt(32);
+            Ore.OreSpawnProperties properties = Ore.OreSpawnProperties.create(4 + random.nextInt(13), 1 + random.nextInt(20), minHeight, minHeight + 16 + random.nextInt(48))
+                    .addFilter(filters[i % filters.length], true)
+                    .setVeinType(veinType);
+            Ore ore = new Ore(Block.Properties.create(Material.ROCK), properties);
+            ore.setRegistryName(SimpleOreLib.MODID, "benchmark_ore_" + i);
+            ores.add(ore);
+        }
+        return ores;
+    }
+
+    /**
+     * Creates a {@link Random} seeded like the decoration of the given chunk
+     * @param seed   the world seed
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return the seeded {@link Random}
+     */
+    static Random decorationRandom(long seed, int chunkX, int chunkZ) {
+        SharedSeedRandom random = new SharedSeedRandom();
+        random.setDecorationSeed(seed, chunkX << 4, chunkZ << 4);
+        return random;
+    }
+
+    /**
+     * Creates a stub {@link IWorld} made of {@link ChunkPrimer ChunkPrimers} that are filled with stone up to the given height.<br>
+     * Only the methods used by ore generation are supported.
+     * @param surface the height up to which new chunks are filled with stone
+     * @return the stub world
+     */
+    static IWorld stubWorld(int surface) {
+        ConcurrentMap<Long, ChunkPrimer> chunks = new ConcurrentHashMap<>();
+        return (IWorld) Proxy.newProxyInstance(IWorld.class.getClassLoader(), new Class<?>[]{IWorld.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getChunk":
+                    if (args[0] instanceof BlockPos) {
+                        BlockPos pos = (BlockPos) args[0];
+                        return chunk(chunks, surface, pos.getX() >> 4, pos.getZ() >> 4);
+                    }
+                    return chunk(chunks, surface, (Integer) args[0], (Integer) args[1]);
+                case "getBlockState": {
+                    BlockPos pos = (BlockPos) args[0];
+                    return chunk(chunks, surface, pos.getX() >> 4, pos.getZ() >> 4).getBlockState(pos);
+                }
+                case "setBlockState": {
+                    BlockPos pos = (BlockPos) args[0];
+                    chunk(chunks, surface, pos.getX() >> 4, pos.getZ() >> 4).setBlockState(pos, (BlockState) args[1], false);
+                    return true;
+                }
+                case "getHeight":
+                    return surface;
+                case "getWorld":
+                    return null;
+                case "getSeed":
+                    return 0L;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "StubWorld";
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static ChunkPrimer chunk(ConcurrentMap<Long, ChunkPrimer> chunks, int surface, int chunkX, int chunkZ) {
+        return chunks.computeIfAbsent(ChunkPos.asLong(chunkX, chunkZ), key -> {
+            ChunkPrimer chunk = new ChunkPrimer(new ChunkPos(chunkX, chunkZ), UpgradeData.EMPTY);
+            BlockPos.Mutable pos = new BlockPos.Mutable();
+            BlockState stone = Blocks.STONE.getDefaultState();
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int y = 0; y < surface; y++) {
+                        chunk.setBlockState(pos.setPos(x, y, z), stone, false);
+                    }
+                }
+            }
+            return chunk;
+        });
+    }
+
+    private static final class StubBiome extends Biome {
+        private StubBiome(Category category) {
+            super(new Biome.Builder()
+                    .surfaceBuilder(SurfaceBuilder.DEFAULT, SurfaceBuilder.STONE_STONE_GRAVEL_CONFIG)
+                    .precipitation(RainType.NONE)
+                    .category(category)
+                    .depth(0.1F)
+                    .scale(0.2F)
+                    .temperature(0.5F)
+                    .downfall(0.5F)
+                    .waterColor(4159204)
+                    .waterFogColor(329011)
+                    .parent(null));
+        }
+    }
+}
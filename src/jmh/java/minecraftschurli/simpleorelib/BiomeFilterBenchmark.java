@@ -0,0 +1,76 @@
+package minecraftschurli.simpleorelib;
+
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.biome.Biome;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link BiomeFilter#test(Biome)} on deep and/or chains over all registered {@link Biome Biomes}, before and after compilation
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BiomeFilterBenchmark {
+    @Param({"1", "8", "32"})
+    public int depth;
+
+    private List<Biome> biomes;
+    private BiomeFilter chain;
+    private BiomeFilter compiled;
+    private int size;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.bootstrap();
+        biomes = BenchmarkSupport.registeredBiomes();
+        BiomeFilter[] parts = {BiomeFilter.OVERWORLD, BiomeFilter.OCEAN.negate(), BiomeFilter.SANDY, BiomeFilter.MOUNTAINS, BiomeFilter.RIVER.negate()};
+        BiomeFilter filter = parts[0];
+        BiomeFilter opaque = opaque(parts[0]);
+        for (int i = 1; i < depth; i++) {
+            BiomeFilter part = parts[i % parts.length];
+            filter = i % 2 == 0 ? filter.and(part) : filter.or(part);
+            opaque = i % 2 == 0 ? opaque.and(opaque(part)) : opaque.or(opaque(part));
+        }
+        // structurally equal filters share their compiled result, so the uncompiled chain is built from opaque predicates
+        chain = opaque;
+        compiled = filter.compile();
+        for (Biome biome : biomes) {
+            size = Math.max(size, Registry.BIOME.getId(biome) + 1);
+        }
+    }
+
+    private static BiomeFilter opaque(BiomeFilter filter) {
+        BiomeExpression expression = filter.getExpression();
+        return new BiomeFilter(expression::evaluate);
+    }
+
+    @Benchmark
+    public void chain(Blackhole blackhole) {
+        for (Biome biome : biomes) {
+            blackhole.consume(chain.test(biome));
+        }
+    }
+
+    @Benchmark
+    public void compiled(Blackhole blackhole) {
+        for (Biome biome : biomes) {
+            blackhole.consume(compiled.test(biome));
+        }
+    }
+
+    @Benchmark
+    public BitSet compile() {
+        return compiled.getExpression().compile(size);
+    }
+}
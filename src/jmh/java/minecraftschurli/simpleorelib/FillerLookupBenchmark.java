@@ -0,0 +1,68 @@
+package minecraftschurli.simpleorelib;
+
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.gen.feature.OreFeatureConfig;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the filler lookup behind {@link SimpleOreLib#fillerForBiome(Biome)} with a varying number of registered fillers
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FillerLookupBenchmark {
+    @Param({"1", "10", "100"})
+    public int fillers;
+
+    private List<Biome> biomes;
+    private FillerIndex unbaked;
+    private FillerIndex baked;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.bootstrap();
+        biomes = BenchmarkSupport.registeredBiomes();
+        unbaked = createIndex();
+        baked = createIndex();
+        baked.bake();
+    }
+
+    private FillerIndex createIndex() {
+        Random random = new Random(fillers);
+        FillerIndex index = new FillerIndex();
+        OreFeatureConfig.FillerBlockType[] types = OreFeatureConfig.FillerBlockType.values();
+        for (int i = 0; i < fillers; i++) {
+            Biome[] matching = new Biome[1 + random.nextInt(4)];
+            for (int j = 0; j < matching.length; j++) {
+                matching[j] = biomes.get(random.nextInt(biomes.size()));
+            }
+            index.add(new BiomeFilter(random.nextInt(10), matching), types[i % types.length]);
+        }
+        return index;
+    }
+
+    @Benchmark
+    public void unbaked(Blackhole blackhole) {
+        for (Biome biome : biomes) {
+            blackhole.consume(unbaked.get(biome));
+        }
+    }
+
+    @Benchmark
+    public void baked(Blackhole blackhole) {
+        for (Biome biome : biomes) {
+            blackhole.consume(baked.get(biome));
+        }
+    }
+}
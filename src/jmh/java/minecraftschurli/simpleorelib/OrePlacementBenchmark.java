@@ -0,0 +1,58 @@
+package minecraftschurli.simpleorelib;
+
+import net.minecraft.world.IWorld;
+import net.minecraft.world.gen.feature.OreFeatureConfig;
+import net.minecraft.util.math.BlockPos;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures placing all ores of one {@link BatchedOreFeatureConfig} into stub chunks filled with stone.<br>
+ * The benchmark cycles through a fixed region of chunks, so later passes over a chunk replace fewer blocks.
+ * The ore index is disabled, as it generates every vein like {@link VeinType#POOLED}.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OrePlacementBenchmark {
+    @Param({"10", "70"})
+    public int oreCount;
+
+    @Param({"VANILLA", "POOLED"})
+    public VeinType veinType;
+
+    private IWorld world;
+    private BatchedOreFeatureConfig config;
+    private int chunk;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.bootstrap();
+        world = BenchmarkSupport.stubWorld(64);
+        List<OreEntry> entries = new ArrayList<>();
+        for (Ore ore : BenchmarkSupport.ores(oreCount, 0L, veinType)) {
+            entries.add(new OreEntry(ore, OreFeatureConfig.FillerBlockType.NATURAL_STONE, ore.getDefaultState(), ore.getSettings()));
+        }
+        config = new BatchedOreFeatureConfig(entries);
+        for (OreEntry entry : config.entries) {
+            OreVeinGenerator.reserve(entry.config.size);
+        }
+    }
+
+    @Benchmark
+    public boolean placeChunk() {
+        chunk = (chunk + 1) & 1023;
+        int chunkX = chunk & 31;
+        int chunkZ = chunk >> 5;
+        return SimpleOreLib.BATCHED_ORE.place(world, null, BenchmarkSupport.decorationRandom(0L, chunkX, chunkZ), new BlockPos(chunkX << 4, 0, chunkZ << 4), config);
+    }
+}
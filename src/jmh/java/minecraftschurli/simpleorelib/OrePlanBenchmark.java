@@ -0,0 +1,43 @@
+package minecraftschurli.simpleorelib;
+
+import net.minecraft.world.biome.Biome;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full ore registration run over a synthetic registry of N {@link Biome Biomes} and M {@link Ore Ores}.<br>
+ * Only the planning is measured, applying the plan would add features to the {@link Biome Biomes} on every invocation.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OrePlanBenchmark {
+    @Param({"80", "200"})
+    public int biomeCount;
+
+    @Param({"10", "70"})
+    public int oreCount;
+
+    private List<Biome> biomes;
+    private List<Ore> ores;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.bootstrap();
+        biomes = BenchmarkSupport.syntheticBiomes(biomeCount);
+        ores = BenchmarkSupport.ores(oreCount, 0L, VeinType.VANILLA);
+    }
+
+    @Benchmark
+    public OrePlan plan() {
+        return OrePlan.compute(biomes, ores);
+    }
+}
@@ -0,0 +1,330 @@
+package minecraftschurli.simpleorelib;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.material.Material;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.chunk.IChunk;
+import net.minecraft.world.gen.GenerationStage;
+import net.minecraft.world.gen.feature.ConfiguredFeature;
+import net.minecraft.world.gen.feature.DecoratedFeatureConfig;
+import net.minecraft.world.gen.feature.OreFeatureConfig;
+import net.minecraftforge.common.BiomeDictionary;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generates benchmark ores into stub chunks without a client, server or network and reports
+ * the throughput, the placed blocks per {@link Ore}, the allocation rate and whether the output is deterministic.<br>
+ * The plan is applied to the registered {@link Biome Biomes} as the active plan, and every chunk runs the ore features of its {@link Biome}
+ * like the vanilla decoration does, so the features are read from the same lists later changes replace them in.
+ * The chunks are decorated in nine passes, one per chunk x and z modulo 3, so chunks decorated at the same time never share a neighbour,
+ * which makes the output independent of the number of threads just like the staged vanilla generation.
+ * Run it with {@code gradlew harness -PharnessArgs="--chunks 64 --threads 1,2,8 --ores 40 --seed 1 --runs 2"}.<br>
+ * With {@code --stress 4} that many extra threads change the active plan and call the public API while the chunks are generated:
+ * they swap the features of every {@link Biome} by reloading the settings of an {@link Ore} that lies above the stub terrain,
+ * register fillers that resolve to the filler a {@link Biome} already has, change {@link BiomeFilter} priorities
+ * and check compiled filters against the registered {@link Biome} ids.
+ * None of this may change the output or fail.
+ * The process exits with status 1 if any run produced a different world or a stress thread failed.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+public final class WorldgenHarness {
+    private static final int SURFACE = 64;
+    private static final GenerationStage.Decoration STAGE = GenerationStage.Decoration.UNDERGROUND_ORES;
+
+    private WorldgenHarness() {}
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        int chunks = Integer.parseInt(options.getOrDefault("chunks", "32"));
+        int oreCount = Integer.parseInt(options.getOrDefault("ores", "20"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "0"));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "2"));
+        int stress = Integer.parseInt(options.getOrDefault("stress", "0"));
+        VeinType veinType = VeinType.valueOf(options.getOrDefault("veinType", "POOLED"));
+        List<Integer> threadCounts = new ArrayList<>();
+        for (String threads : options.getOrDefault("threads", "1," + Runtime.getRuntime().availableProcessors()).split(",")) {
+            threadCounts.add(Integer.parseInt(threads.trim()));
+        }
+
+        BenchmarkSupport.bootstrap();
+        List<Biome> biomes = BenchmarkSupport.registeredBiomes();
+        BenchmarkSupport.ores(oreCount, seed, veinType);
+        Ore stressOre = null;
+        if (stress > 0) {
+            // lies above the stub terrain, so its features are swapped without drawing from the random or placing anything
+            stressOre = new Ore(Block.Properties.create(Material.ROCK), Ore.OreSpawnProperties.create(8, 1, 200, 250));
+            stressOre.setRegistryName(SimpleOreLib.MODID, "stress_ore");
+        }
+        SimpleOreLib.ORES.freeze();
+        List<Ore> ores = SimpleOreLib.getOres();
+        ActivePlan plan = SimpleOreLib.activate(OrePlan.compute(biomes, ores));
+        System.out.printf(Locale.ROOT, "%d ores, %d biomes, %dx%d chunks, seed %d, %s veins, %d stress threads%n",
+                ores.size(), biomes.size(), chunks, chunks, seed, veinType, stress);
+
+        Stress stressThreads = new Stress(plan, biomes, stressOre, stress, seed);
+        Long expected = null;
+        double baseline = 0;
+        boolean deterministic = true;
+        for (int threads : threadCounts) {
+            for (int run = 0; run < runs; run++) {
+                stressThreads.start();
+                Result result;
+                try {
+                    result = run(biomes, chunks, seed, threads);
+                } finally {
+                    stressThreads.stop();
+                }
+                if (expected == null) expected = result.checksum;
+                boolean same = expected == result.checksum;
+                deterministic &= same;
+                double rate = chunks * chunks / result.seconds;
+                if (baseline == 0) baseline = rate / threads;
+                System.out.printf(Locale.ROOT, "threads %d run %d: %.1f chunks/s (%.2fx), %.1f MB/s allocated, checksum %016x%s%n",
+                        threads, run, rate, rate / baseline, result.allocated / result.seconds / 1_000_000.0,
+                        result.checksum, same ? "" : " (differs)");
+                if (run == runs - 1 && threads == threadCounts.get(threadCounts.size() - 1)) {
+                    result.blocks.forEach((ore, blocks) -> System.out.printf(Locale.ROOT, "  %s: %d blocks, %.2f per chunk%n",
+                            ore.getRegistryName(), blocks, (double) blocks / (chunks * chunks)));
+                }
+            }
+        }
+        System.out.println(deterministic ? "Deterministic: yes" : "Deterministic: NO");
+        if (stress > 0) {
+            System.out.printf(Locale.ROOT, "Stress: %d API calls, %d feature swaps, %d failures%n",
+                    stressThreads.calls.sum(), stressThreads.reloads.sum(), stressThreads.failures.sum());
+        }
+        if (!deterministic || stressThreads.failures.sum() > 0) System.exit(1);
+    }
+
+    private static Result run(List<Biome> biomes, int chunks, long seed, int threads) throws Exception {
+        IWorld world = BenchmarkSupport.stubWorld(SURFACE);
+        for (int x = -1; x <= chunks; x++) {
+            for (int z = -1; z <= chunks; z++) {
+                world.getChunk(x, z);
+            }
+        }
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        LongAdder allocated = new LongAdder();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            for (int pass = 0; pass < 9; pass++) {
+                int offsetX = pass / 3;
+                int offsetZ = pass % 3;
+                List<Future<?>> futures = new ArrayList<>();
+                for (int x = offsetX; x < chunks; x += 3) {
+                    int chunkX = x;
+                    futures.add(executor.submit(() -> {
+                        long before = allocatedBytes(threadBean);
+                        for (int chunkZ = offsetZ; chunkZ < chunks; chunkZ += 3) {
+                            decorate(world, biomes, seed, chunkX, chunkZ);
+                        }
+                        allocated.add(allocatedBytes(threadBean) - before);
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        return scan(world, chunks, seconds, allocated.sum());
+    }
+
+    /**
+     * Runs the ore features of the {@link Biome} of the given chunk, skipping the vanilla ore features of the registered {@link Biome Biomes}
+     */
+    private static void decorate(IWorld world, List<Biome> biomes, long seed, int chunkX, int chunkZ) {
+        Biome biome = biomes.get(Math.floorMod(Objects.hash(seed, chunkX >> 2, chunkZ >> 2), biomes.size()));
+        BlockPos pos = new BlockPos(chunkX << 4, 0, chunkZ << 4);
+        for (ConfiguredFeature<?, ?> feature : biome.getFeatures(STAGE)) {
+            if (feature.config instanceof DecoratedFeatureConfig && ((DecoratedFeatureConfig) feature.config).feature.feature == SimpleOreLib.BATCHED_ORE) {
+                feature.place(world, null, BenchmarkSupport.decorationRandom(seed, chunkX, chunkZ), pos);
+            }
+        }
+    }
+
+    private static Result scan(IWorld world, int chunks, double seconds, long allocated) {
+        Map<Ore, Long> blocks = new TreeMap<>(Comparator.comparing(ore -> String.valueOf(ore.getRegistryName())));
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        long checksum = 1125899906842597L;
+        for (int chunkX = -1; chunkX <= chunks; chunkX++) {
+            for (int chunkZ = -1; chunkZ <= chunks; chunkZ++) {
+                IChunk chunk = world.getChunk(chunkX, chunkZ);
+                for (int y = 0; y < SURFACE; y++) {
+                    for (int x = 0; x < 16; x++) {
+                        for (int z = 0; z < 16; z++) {
+                            BlockState state = chunk.getBlockState(pos.setPos((chunkX << 4) + x, y, (chunkZ << 4) + z));
+                            checksum = 31 * checksum + Block.getStateId(state);
+                            if (state.getBlock() instanceof Ore) blocks.merge((Ore) state.getBlock(), 1L, Long::sum);
+                        }
+                    }
+                }
+            }
+        }
+        return new Result(seconds, allocated, checksum, blocks);
+    }
+
+    private static long allocatedBytes(ThreadMXBean threadBean) {
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * Threads changing the active plan and calling the public API while chunks are generated.<br>
+     * Every change keeps what the chunks generate, so the generated world has to stay the same.
+     */
+    private static final class Stress {
+        private final ActivePlan plan;
+        private final List<Biome> biomes;
+        private final Map<Biome, OreFeatureConfig.FillerBlockType> fillers = new IdentityHashMap<>();
+        private final List<Biome> stoneBiomes = new ArrayList<>();
+        private final Ore ore;
+        private final int threads;
+        private final long seed;
+        private final List<BiomeFilter> filters = new ArrayList<>();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder reloads = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final List<Thread> running = new ArrayList<>();
+        private volatile boolean active;
+
+        private Stress(ActivePlan plan, List<Biome> biomes, Ore ore, int threads, long seed) {
+            this.plan = plan;
+            this.biomes = biomes;
+            this.ore = ore;
+            this.threads = threads;
+            this.seed = seed;
+            for (Biome biome : biomes) {
+                OreFeatureConfig.FillerBlockType filler = SimpleOreLib.fillerForBiome(biome);
+                fillers.put(biome, filler);
+                if (filler == OreFeatureConfig.FillerBlockType.NATURAL_STONE) stoneBiomes.add(biome);
+            }
+            for (int i = 0; i < 8 && !stoneBiomes.isEmpty(); i++) {
+                filters.add(new BiomeFilter(i, stoneBiomes.get(i % stoneBiomes.size())));
+            }
+        }
+
+        private void start() {
+            active = true;
+            for (int i = 0; i < threads; i++) {
+                Random random = new Random(seed + i);
+                Thread thread = new Thread(() -> {
+                    while (active) {
+                        try {
+                            call(random);
+                            calls.increment();
+                        } catch (RuntimeException e) {
+                            if (failures.sum() == 0) e.printStackTrace();
+                            failures.increment();
+                        }
+                    }
+                }, "stress-" + i);
+                thread.setDaemon(true);
+                running.add(thread);
+                thread.start();
+            }
+        }
+
+        private void stop() throws InterruptedException {
+            active = false;
+            for (Thread thread : running) {
+                thread.join();
+            }
+            running.clear();
+        }
+
+        private void call(Random random) {
+            Biome biome = biomes.get(random.nextInt(biomes.size()));
+            switch (random.nextInt(7)) {
+                case 0: {
+                    // swaps the feature of every biome through the same path as /simpleorelib reload
+                    OreSettings current = ore.getSettings();
+                    OreSettings next = new OreSettings(current.veinSize, current.chance == 1 ? 2 : 1, current.minHeight, current.maxHeight,
+                            current.veinType, current.biomeFilter);
+                    List<Ore> ores = SimpleOreLib.getOres();
+                    Map<Ore, OreSettings> settings = new IdentityHashMap<>();
+                    for (Ore registered : ores) {
+                        settings.put(registered, registered == ore ? next : registered.getSettings());
+                    }
+                    ActivePlan.Reload reload = plan.prepare(ores, settings);
+                    synchronized (SimpleOreLib.class) {
+                        if (plan.apply(reload)) {
+                            ore.setSettings(next);
+                            reloads.increment();
+                        }
+                    }
+                    break;
+                }
+                case 1:
+                    if (!filters.isEmpty()) {
+                        SimpleOreLib.addFiller(filters.get(random.nextInt(filters.size())), OreFeatureConfig.FillerBlockType.NATURAL_STONE);
+                    }
+                    break;
+                case 2:
+                    if (!filters.isEmpty()) filters.get(random.nextInt(filters.size())).setPriority(random.nextInt(16));
+                    break;
+                case 3:
+                    if (SimpleOreLib.fillerForBiome(biome) != fillers.get(biome)) {
+                        throw new IllegalStateException("The filler of " + biome.getRegistryName() + " changed");
+                    }
+                    break;
+                case 4: {
+                    Set<Ore> ores = new HashSet<>(SimpleOreLib.getOres());
+                    for (OreEntry entry : SimpleOreLib.entriesForBiome(biome)) {
+                        if (!ores.contains(entry.ore)) throw new IllegalStateException("An entry of " + biome.getRegistryName() + " has an unknown ore");
+                    }
+                    break;
+                }
+                case 5: {
+                    Biome other = biomes.get(random.nextInt(biomes.size()));
+                    BiomeFilter built = new BiomeFilter(other).or(BiomeFilter.OCEAN).and(BiomeFilter.OVERWORLD.negate()).compile();
+                    boolean expected = (biome == other || BiomeDictionary.hasType(biome, BiomeDictionary.Type.OCEAN))
+                            && !BiomeDictionary.hasType(biome, BiomeDictionary.Type.OVERWORLD);
+                    if (!built.isCompiled() || built.test(biome) != expected) {
+                        throw new IllegalStateException("A compiled filter disagrees with the biome dictionary for " + biome.getRegistryName());
+                    }
+                    break;
+                }
+                default:
+                    if (!BiomeFilter.fromJson(BiomeFilter.OVERWORLD.or(BiomeFilter.OCEAN).toJson(), 0).equals(BiomeFilter.OVERWORLD.or(BiomeFilter.OCEAN))) {
+                        throw new IllegalStateException("A filter read from JSON is not equal to the filter it was written from");
+                    }
+                    break;
+            }
+        }
+    }
+
+    private static final class Result {
+        private final double seconds;
+        private final long allocated;
+        private final long checksum;
+        private final Map<Ore, Long> blocks;
+
+        private Result(double seconds, long allocated, long checksum, Map<Ore, Long> blocks) {
+            this.seconds = seconds;
+            this.allocated = allocated;
+            this.checksum = checksum;
+            this.blocks = blocks;
+        }
+    }
+}
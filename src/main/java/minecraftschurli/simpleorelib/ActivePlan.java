@@ -0,0 +1,245 @@
+package minecraftschurli.simpleorelib;
+
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.gen.GenerationStage;
+import net.minecraft.world.gen.feature.ConfiguredFeature;
+import net.minecraft.world.gen.feature.OreFeatureConfig;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@link OrePlan} that is currently applied to the {@link Biome Biomes}.<br>
+ * Every {@link Biome} gets exactly one {@link BatchedOreFeature}, even if no {@link Ore} generates in it,
+ * so later changes only ever replace that feature in place and never change the size of the feature lists.
+ * Changes cost work proportional to the {@link Biome Biomes} they affect instead of a full rebuild.<br>
+ * Changes are serialised by the monitor of this plan, while {@link ActivePlan#getEntries(Biome)} only reads
+ * an immutable snapshot that is republished after every change, so the generation threads never wait for a change.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+final class ActivePlan {
+    private static final GenerationStage.Decoration STAGE = GenerationStage.Decoration.UNDERGROUND_ORES;
+
+    private final List<Biome> biomes;
+    private final Map<Biome, Integer> indices = new IdentityHashMap<>();
+    private final List<List<OreEntry>> entries;
+    private final List<ConfiguredFeature<?, ?>> features;
+    private final Map<List<OreEntry>, ConfiguredFeature<?, ?>> internedFeatures = new HashMap<>();
+    private final Map<OreEntry, OreEntry> internedEntries = new HashMap<>();
+    private volatile List<List<OreEntry>> snapshot;
+
+    /**
+     * Applies the given plan to its {@link Biome Biomes}.<br>
+     * This has to be called from the main thread.
+     * @param plan the plan to apply
+     */
+    ActivePlan(@Nonnull OrePlan plan) {
+        this.biomes = plan.getBiomes();
+        this.entries = new ArrayList<>(plan.getEntries());
+        this.features = new ArrayList<>(plan.getFeatures());
+        for (int i = 0; i < biomes.size(); i++) {
+            List<OreEntry> biomeEntries = entries.get(i);
+            internedFeatures.put(biomeEntries, features.get(i));
+            for (OreEntry entry : biomeEntries) {
+                internedEntries.put(entry, entry);
+            }
+            indices.put(biomes.get(i), i);
+            biomes.get(i).addFeature(STAGE, features.get(i));
+        }
+        publish();
+    }
+
+    /**
+     * Adds the given {@link Ore Ores} to every {@link Biome} they match
+     * @param ores the {@link Ore Ores} to add
+     */
+    synchronized void addOres(@Nonnull List<Ore> ores) {
+        OreSettings[] settings = new OreSettings[ores.size()];
+        BiomeFilter[] filters = new BiomeFilter[ores.size()];
+        for (int i = 0; i < filters.length; i++) {
+            settings[i] = ores.get(i).getSettings();
+            filters[i] = settings[i].biomeFilter.compile();
+        }
+        for (int i = 0; i < biomes.size(); i++) {
+            Biome biome = biomes.get(i);
+            List<OreEntry> biomeEntries = null;
+            for (int j = 0; j < filters.length; j++) {
+                Ore ore = ores.get(j);
+                if (settings[j].biomeFilter != BiomeFilter.ALL && !filters[j].test(biome)) continue;
+                if (biomeEntries == null) biomeEntries = new ArrayList<>(entries.get(i));
+                OreFeatureConfig.FillerBlockType filler = SimpleOreLib.fillerForBiome(biome);
+                biomeEntries.add(intern(new OreEntry(ore, filler, ore.resolveGenerationState(biome, filler), settings[j])));
+            }
+            if (biomeEntries != null) replace(i, biomeEntries);
+        }
+        publish();
+    }
+
+    /**
+     * Re-resolves the filler of every {@link Biome} the given {@link BiomeFilter} matches
+     * @param filter the {@link BiomeFilter} a filler was added for
+     */
+    synchronized void updateFillers(@Nonnull BiomeFilter filter) {
+        BiomeFilter compiled = filter.compile();
+        for (int i = 0; i < biomes.size(); i++) {
+            Biome biome = biomes.get(i);
+            if (!compiled.test(biome)) continue;
+            OreFeatureConfig.FillerBlockType filler = SimpleOreLib.fillerForBiome(biome);
+            List<OreEntry> current = entries.get(i);
+            List<OreEntry> biomeEntries = new ArrayList<>(current.size());
+            boolean changed = false;
+            for (OreEntry entry : current) {
+                if (entry.filler == filler) {
+                    biomeEntries.add(entry);
+                } else {
+                    biomeEntries.add(intern(new OreEntry(entry.ore, filler, entry.ore.resolveGenerationState(biome, filler), entry.settings)));
+                    changed = true;
+                }
+            }
+            if (changed) replace(i, biomeEntries);
+        }
+        publish();
+    }
+
+    /**
+     * Computes the {@link Biome Biomes} whose {@link OreEntry OreEntries} change with the given settings.<br>
+     * This only reads the published snapshot and creates the new features without adding them,
+     * so it can run off the main thread while the current features keep generating.
+     * Unchanged {@link Ore Ores} keep their position in each {@link Biome}, newly matching ones are appended in the given order.
+     * @param ores     the registered {@link Ore Ores}
+     * @param settings the new settings of the given {@link Ore Ores}
+     * @return the changes to pass to {@link ActivePlan#apply(Reload)}
+     */
+    @Nonnull
+    Reload prepare(@Nonnull List<Ore> ores, @Nonnull Map<Ore, OreSettings> settings) {
+        List<List<OreEntry>> base = snapshot;
+        Map<Ore, BiomeFilter> filters = new IdentityHashMap<>();
+        for (Ore ore : ores) {
+            filters.put(ore, settings.get(ore).biomeFilter.compile());
+        }
+        Map<OreEntry, OreEntry> interned = new HashMap<>();
+        Map<Integer, List<OreEntry>> changes = new HashMap<>();
+        Map<List<OreEntry>, ConfiguredFeature<?, ?>> created = new HashMap<>();
+        for (int i = 0; i < biomes.size(); i++) {
+            Biome biome = biomes.get(i);
+            OreFeatureConfig.FillerBlockType filler = SimpleOreLib.fillerForBiome(biome);
+            List<OreEntry> current = base.get(i);
+            List<OreEntry> biomeEntries = new ArrayList<>(current.size());
+            Set<Ore> present = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (OreEntry entry : current) {
+                present.add(entry.ore);
+                OreSettings oreSettings = settings.getOrDefault(entry.ore, entry.ore.getSettings());
+                BiomeFilter filter = filters.getOrDefault(entry.ore, oreSettings.biomeFilter);
+                if (oreSettings.biomeFilter != BiomeFilter.ALL && !filter.test(biome)) continue;
+                biomeEntries.add(interned.computeIfAbsent(new OreEntry(entry.ore, filler, entry.ore.resolveGenerationState(biome, filler), oreSettings), key -> key));
+            }
+            for (Ore ore : ores) {
+                OreSettings oreSettings = settings.get(ore);
+                if (present.contains(ore) || oreSettings.biomeFilter != BiomeFilter.ALL && !filters.get(ore).test(biome)) continue;
+                biomeEntries.add(interned.computeIfAbsent(new OreEntry(ore, filler, ore.resolveGenerationState(biome, filler), oreSettings), key -> key));
+            }
+            if (biomeEntries.equals(current)) continue;
+            List<OreEntry> changed = Collections.unmodifiableList(biomeEntries);
+            changes.put(i, changed);
+            created.computeIfAbsent(changed, OrePlan::createFeature);
+        }
+        return new Reload(base, changes, created);
+    }
+
+    /**
+     * Replaces the features of the {@link Biome Biomes} changed by the given {@link Reload}.<br>
+     * This has to be called from the main thread.
+     * @param reload the changes computed by {@link ActivePlan#prepare(List, Map)}
+     * @return {@code false} if this plan changed since the {@link Reload} was prepared, in which case nothing is replaced
+     */
+    synchronized boolean apply(@Nonnull Reload reload) {
+        if (reload.base != snapshot) return false;
+        reload.features.forEach(internedFeatures::putIfAbsent);
+        reload.changes.forEach((index, biomeEntries) -> {
+            List<OreEntry> changed = new ArrayList<>(biomeEntries.size());
+            for (OreEntry entry : biomeEntries) {
+                changed.add(intern(entry));
+            }
+            replace(index, changed);
+        });
+        Set<ConfiguredFeature<?, ?>> used = Collections.newSetFromMap(new IdentityHashMap<>());
+        used.addAll(features);
+        internedFeatures.values().retainAll(used);
+        internedEntries.clear();
+        for (List<OreEntry> biomeEntries : entries) {
+            for (OreEntry entry : biomeEntries) {
+                internedEntries.put(entry, entry);
+            }
+        }
+        publish();
+        return true;
+    }
+
+    /**
+     * Gets the {@link OreEntry OreEntries} that currently generate in the given {@link Biome}
+     * @param biome the {@link Biome} to get the entries for
+     * @return the entries of the given {@link Biome}; an empty list if it is not part of the plan
+     */
+    List<OreEntry> getEntries(@Nonnull Biome biome) {
+        Integer index = indices.get(biome);
+        return index != null ? snapshot.get(index) : Collections.emptyList();
+    }
+
+    private void publish() {
+        snapshot = Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    /**
+     * The changed {@link Biome Biomes} of a reload, computed against one published snapshot
+     */
+    static final class Reload {
+        private final List<List<OreEntry>> base;
+        private final Map<Integer, List<OreEntry>> changes;
+        private final Map<List<OreEntry>, ConfiguredFeature<?, ?>> features;
+
+        private Reload(List<List<OreEntry>> base, Map<Integer, List<OreEntry>> changes, Map<List<OreEntry>, ConfiguredFeature<?, ?>> features) {
+            this.base = base;
+            this.changes = changes;
+            this.features = features;
+        }
+
+        /**
+         * Gets the number of {@link Biome Biomes} whose feature is replaced
+         */
+        int size() {
+            return changes.size();
+        }
+    }
+
+    private OreEntry intern(OreEntry entry) {
+        return internedEntries.computeIfAbsent(entry, key -> key);
+    }
+
+    /**
+     * Replaces the {@link BatchedOreFeature} of the {@link Biome} at the given index in place
+     */
+    private void replace(int index, List<OreEntry> changed) {
+        List<OreEntry> biomeEntries = Collections.unmodifiableList(changed);
+        ConfiguredFeature<?, ?> feature = internedFeatures.computeIfAbsent(biomeEntries, OrePlan::createFeature);
+        for (OreEntry entry : biomeEntries) {
+            OreVeinGenerator.reserve(entry.config.size);
+        }
+        List<ConfiguredFeature<?, ?>> biomeFeatures = biomes.get(index).getFeatures(STAGE);
+        int slot = biomeFeatures.indexOf(features.get(index));
+        if (slot < 0) {
+            SimpleOreLib.LOGGER.warn("The ore feature of biome {} was removed, the ores of that biome will not be updated", biomes.get(index).getRegistryName());
+            return;
+        }
+        biomeFeatures.set(slot, feature);
+        entries.set(index, biomeEntries);
+        features.set(index, feature);
+    }
+}
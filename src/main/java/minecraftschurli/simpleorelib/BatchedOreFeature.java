@@ -0,0 +1,110 @@
+package minecraftschurli.simpleorelib;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.gen.ChunkGenerator;
+import net.minecraft.world.gen.GenerationSettings;
+import net.minecraft.world.gen.Heightmap;
+import net.minecraft.world.gen.feature.Feature;
+
+import javax.annotation.Nullable;
+import java.util.Random;
+
+/**
+ * A {@link Feature} that generates every {@link Ore} of a {@link net.minecraft.world.biome.Biome Biome} in one pass.<br>
+ * It is placed once per chunk and samples the vein positions the same way {@link net.minecraft.world.gen.placement.Placement#COUNT_RANGE COUNT_RANGE} does,
+ * but from a single random stream and skipping {@link Ore Ores} that cannot reach any filled section of the chunk or its neighbours.
+ * Veins that only touch sections without a block their filler accepts are skipped as well, see {@link FillerSections};
+ * a skipped vein still draws its values from the random stream, so the veins after it stay where vanilla puts them.
+ * {@link VeinType#LARGE} ores are placed from their {@link LargeVeinField} instead and do not use the random stream.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+final class BatchedOreFeature extends Feature<BatchedOreFeatureConfig> {
+
+    BatchedOreFeature() {
+        super(BatchedOreFeatureConfig::deserialize);
+        setRegistryName(SimpleOreLib.MODID, "batched_ore");
+    }
+
+    @Override
+    public boolean place(IWorld world, ChunkGenerator<? extends GenerationSettings> generator, Random rand, BlockPos pos, BatchedOreFeatureConfig config) {
+        return place(world, generator, rand, pos, config, Heightmap.Type.OCEAN_FLOOR_WG);
+    }
+
+    /**
+     * Places the ores of the given config in the chunk at the given position
+     * @param heightmap the heightmap veins have to reach below; {@link Heightmap.Type#OCEAN_FLOOR} for chunks that are already generated,
+     *                  as those do not keep the worldgen heightmaps the vanilla feature uses
+     * @return {@code true} if any vein placed a block
+     */
+    boolean place(IWorld world, ChunkGenerator<? extends GenerationSettings> generator, Random rand, BlockPos pos, BatchedOreFeatureConfig config, Heightmap.Type heightmap) {
+        if (config.entries.length == 0) return false;
+        int chunkX = pos.getX() >> 4;
+        int chunkZ = pos.getZ() >> 4;
+        int topSection = 0;
+        for (int x = -1; x <= 1; x++) {
+            for (int z = -1; z <= 1; z++) {
+                topSection = Math.max(topSection, world.getChunk(chunkX + x, chunkZ + z).getTopFilledSegment());
+            }
+        }
+        int limit = config.getLimit(topSection);
+        FillerSections sections = new FillerSections(world, chunkX, chunkZ);
+        OreIndex.Recorder recorder = OreIndex.ENABLED ? OreIndex.recorder(chunkX, chunkZ, config.entries) : null;
+        BlockPos.Mutable origin = new BlockPos.Mutable();
+        boolean placed = false;
+        for (int i = 0; i < limit; i++) {
+            OreEntry entry = config.entries[i];
+            if (recorder != null) recorder.select(i);
+            if (entry.veinType == VeinType.LARGE) {
+                if (OreMetrics.ENABLED) {
+                    long start = System.nanoTime();
+                    int blocks = LargeVeinField.place(world, chunkX, chunkZ, entry, recorder);
+                    entry.metrics.record(blocks, System.nanoTime() - start);
+                    placed |= blocks != 0;
+                } else {
+                    placed |= LargeVeinField.place(world, chunkX, chunkZ, entry, recorder) != 0;
+                }
+                continue;
+            }
+            for (int n = 0; n < entry.count; n++) {
+                // same order as COUNT_RANGE: x, z, then y
+                int x = pos.getX() + rand.nextInt(16);
+                int z = pos.getZ() + rand.nextInt(16);
+                int y = rand.nextInt(entry.maxHeight - entry.minHeight) + entry.minHeight;
+                origin.setPos(x, y, z);
+                if (OreMetrics.ENABLED) {
+                    long start = System.nanoTime();
+                    if (!sections.canPlace(entry, origin)) {
+                        OreVeinGenerator.skip(world, rand, origin, entry.config, heightmap);
+                        entry.metrics.skip(System.nanoTime() - start);
+                        continue;
+                    }
+                    int blocks = generate(world, generator, rand, origin, entry, heightmap, recorder);
+                    entry.metrics.record(blocks, System.nanoTime() - start);
+                    placed |= blocks != 0;
+                } else if (sections.canPlace(entry, origin)) {
+                    placed |= generate(world, generator, rand, origin, entry, heightmap, recorder) != 0;
+                } else {
+                    OreVeinGenerator.skip(world, rand, origin, entry.config, heightmap);
+                }
+            }
+        }
+        if (recorder != null && placed) recorder.flush(world);
+        return placed;
+    }
+
+    /**
+     * Generates one vein of the given entry.<br>
+     * While the {@link OreIndex} is enabled or another heightmap than the vanilla one is used, every vein is generated by {@link OreVeinGenerator},
+     * which places the same blocks as the vanilla feature but reports them and takes the heightmap.
+     * @return the number of placed blocks; {@link OreMetrics.Counters#UNCOUNTED} if the vein type does not count them
+     */
+    private static int generate(IWorld world, ChunkGenerator<? extends GenerationSettings> generator, Random rand, BlockPos pos, OreEntry entry, Heightmap.Type heightmap, @Nullable OreIndex.Recorder recorder) {
+        if (entry.veinType == VeinType.POOLED || recorder != null || heightmap != Heightmap.Type.OCEAN_FLOOR_WG) {
+            return OreVeinGenerator.generate(world, rand, pos, entry.config, heightmap, recorder);
+        }
+        return Feature.ORE.place(world, generator, rand, pos, entry.config) ? OreMetrics.Counters.UNCOUNTED : 0;
+    }
+}
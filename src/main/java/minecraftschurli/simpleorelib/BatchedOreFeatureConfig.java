@@ -0,0 +1,95 @@
+package minecraftschurli.simpleorelib;
+
+import com.google.common.collect.ImmutableMap;
+import com.mojang.datafixers.Dynamic;
+import com.mojang.datafixers.types.DynamicOps;
+import net.minecraft.block.Block;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.gen.feature.IFeatureConfig;
+import net.minecraft.world.gen.feature.OreFeatureConfig;
+import net.minecraftforge.registries.ForgeRegistries;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The config for {@link BatchedOreFeature} holding every {@link OreEntry} of a {@link net.minecraft.world.biome.Biome Biome}.<br>
+ * The entries are sorted by the lowest y level they can reach and bucketed by chunk section,
+ * so a chunk can skip all entries that start above its highest filled section.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+final class BatchedOreFeatureConfig implements IFeatureConfig {
+    final OreEntry[] entries;
+    /**
+     * The number of entries that can place blocks below the bottom of each chunk section, indexed by section
+     */
+    private final int[] limits = new int[17];
+
+    BatchedOreFeatureConfig(@Nonnull List<OreEntry> entries) {
+        this.entries = entries.toArray(new OreEntry[0]);
+        Arrays.sort(this.entries, Comparator.comparingInt(OreEntry::getLowestY));
+        int limit = 0;
+        for (int section = 0; section < limits.length; section++) {
+            while (limit < this.entries.length && this.entries[limit].getLowestY() < section << 4) limit++;
+            limits[section] = limit;
+        }
+    }
+
+    /**
+     * Gets the number of leading {@link BatchedOreFeatureConfig#entries} that can place blocks at or below the given chunk section
+     * @param topSection the y level of the bottom of the highest section that should be considered
+     * @return the number of leading entries to generate
+     */
+    int getLimit(int topSection) {
+        return limits[MathHelper.clamp((topSection >> 4) + 1, 0, 16)];
+    }
+
+    @Override
+    public <T> Dynamic<T> serialize(DynamicOps<T> ops) {
+        return new Dynamic<>(ops, ops.createMap(ImmutableMap.of(
+                ops.createString("entries"),
+                ops.createList(Arrays.stream(entries).map(entry -> ops.createMap(ImmutableMap.<T, T>builder()
+                        .put(ops.createString("ore"), ops.createString(String.valueOf(entry.ore.getRegistryName())))
+                        .put(ops.createString("config"), entry.config.serialize(ops).getValue())
+                        .put(ops.createString("chance"), ops.createInt(entry.count))
+                        .put(ops.createString("minHeight"), ops.createInt(entry.minHeight))
+                        .put(ops.createString("maxHeight"), ops.createInt(entry.maxHeight))
+                        .put(ops.createString("veinType"), ops.createString(entry.veinType.name()))
+                        .build()))))));
+    }
+
+    /**
+     * Deserializes a {@link BatchedOreFeatureConfig} serialized by {@link BatchedOreFeatureConfig#serialize(DynamicOps)}.<br>
+     * The entries get the settings they were serialized with; values missing from older data fall back to the default settings of the {@link Ore}.
+     * @param dynamic the serialized form
+     * @return the deserialized {@link BatchedOreFeatureConfig}
+     */
+    static BatchedOreFeatureConfig deserialize(Dynamic<?> dynamic) {
+        return new BatchedOreFeatureConfig(dynamic.get("entries").asList(BatchedOreFeatureConfig::deserializeEntry));
+    }
+
+    private static OreEntry deserializeEntry(Dynamic<?> dynamic) {
+        ResourceLocation name = new ResourceLocation(dynamic.get("ore").asString(""));
+        Block block = ForgeRegistries.BLOCKS.getValue(name);
+        if (!(block instanceof Ore)) {
+            throw new IllegalArgumentException("Unknown ore: " + name);
+        }
+        Ore ore = (Ore) block;
+        OreSettings defaults = ore.getDefaultSettings();
+        OreFeatureConfig config = OreFeatureConfig.deserialize(dynamic.get("config").orElseEmptyMap());
+        VeinType veinType;
+        try {
+            veinType = VeinType.valueOf(dynamic.get("veinType").asString(defaults.veinType.name()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown vein type of " + name, e);
+        }
+        OreSettings settings = new OreSettings(config.size, dynamic.get("chance").asInt(defaults.chance),
+                dynamic.get("minHeight").asInt(defaults.minHeight), dynamic.get("maxHeight").asInt(defaults.maxHeight), veinType, defaults.biomeFilter);
+        return new OreEntry(ore, config.target, config.state, settings);
+    }
+}
@@ -0,0 +1,548 @@
+package minecraftschurli.simpleorelib;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.biome.Biome;
+import net.minecraftforge.common.BiomeDictionary;
+import net.minecraftforge.registries.ForgeRegistries;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * The condition of a {@link BiomeFilter} as a normalised expression tree.<br>
+ * Expressions are hash-consed: every factory method returns the one interned instance of a structurally equal expression,
+ * so equal conditions are the same object and share their compiled result.
+ * Nested "and" and "or" expressions are flattened, duplicates and neutral elements are removed,
+ * biome sets combined with "and" or "or" are merged into one set and double negations cancel out.
+ * Everything but {@link Opaque opaque predicates} can be written to and read from JSON.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+abstract class BiomeExpression {
+    private static final Interner<BiomeExpression> INTERNER = Interners.newWeakInterner();
+
+    /**
+     * Matches every {@link Biome}
+     */
+    static final BiomeExpression ALL = INTERNER.intern(new Constant(true));
+    /**
+     * Matches no {@link Biome}
+     */
+    static final BiomeExpression NONE = INTERNER.intern(new Constant(false));
+
+    private final int hash;
+    @Nullable
+    private volatile Compiled compiled;
+
+    private BiomeExpression(int hash) {
+        this.hash = hash;
+    }
+
+    /**
+     * Creates an expression matching the given {@link Biome Biomes}
+     * @param biomes the {@link Biome Biomes} to match
+     * @return the interned expression
+     */
+    static BiomeExpression biomes(@Nonnull Collection<Biome> biomes) {
+        if (biomes.isEmpty()) return NONE;
+        return INTERNER.intern(new Biomes(ImmutableSet.copyOf(biomes)));
+    }
+
+    /**
+     * Creates an expression matching the {@link Biome Biomes} of the given {@link BiomeDictionary.Type}
+     * @param type the {@link BiomeDictionary.Type} to match
+     * @return the interned expression
+     */
+    static BiomeExpression type(@Nonnull BiomeDictionary.Type type) {
+        return INTERNER.intern(new Type(type));
+    }
+
+    /**
+     * Creates an expression that evaluates the given {@link Predicate}.<br>
+     * If the {@link Predicate} is a {@link BiomeFilter} its expression is returned instead.
+     * @param predicate the {@link Predicate} to evaluate
+     * @return the interned expression
+     */
+    static BiomeExpression of(@Nonnull Predicate<? super Biome> predicate) {
+        if (predicate instanceof BiomeFilter) return ((BiomeFilter) predicate).getExpression();
+        return INTERNER.intern(new Opaque(predicate));
+    }
+
+    /**
+     * Creates the negation of the given expression
+     * @param expression the expression to negate
+     * @return the interned expression
+     */
+    static BiomeExpression not(@Nonnull BiomeExpression expression) {
+        if (expression == ALL) return NONE;
+        if (expression == NONE) return ALL;
+        if (expression instanceof Not) return ((Not) expression).child;
+        return INTERNER.intern(new Not(expression));
+    }
+
+    /**
+     * Creates an expression matching the {@link Biome Biomes} all given expressions match
+     * @param expressions the expressions to combine
+     * @return the interned expression
+     */
+    static BiomeExpression and(@Nonnull BiomeExpression... expressions) {
+        return combine(true, Arrays.asList(expressions));
+    }
+
+    /**
+     * Creates an expression matching the {@link Biome Biomes} any of the given expressions match
+     * @param expressions the expressions to combine
+     * @return the interned expression
+     */
+    static BiomeExpression or(@Nonnull BiomeExpression... expressions) {
+        return combine(false, Arrays.asList(expressions));
+    }
+
+    private static BiomeExpression combine(boolean and, Collection<BiomeExpression> expressions) {
+        BiomeExpression neutral = and ? ALL : NONE;
+        BiomeExpression absorbing = and ? NONE : ALL;
+        Set<BiomeExpression> children = new LinkedHashSet<>();
+        for (BiomeExpression expression : expressions) {
+            if (expression instanceof Combination && ((Combination) expression).and == and) {
+                children.addAll(((Combination) expression).children);
+            } else {
+                children.add(expression);
+            }
+        }
+        children.remove(neutral);
+        if (children.contains(absorbing)) return absorbing;
+        Set<Biome> biomes = null;
+        for (Iterator<BiomeExpression> iterator = children.iterator(); iterator.hasNext(); ) {
+            BiomeExpression child = iterator.next();
+            if (!(child instanceof Biomes)) continue;
+            iterator.remove();
+            if (biomes == null) {
+                biomes = new LinkedHashSet<>(((Biomes) child).biomes);
+            } else if (and) {
+                biomes.retainAll(((Biomes) child).biomes);
+            } else {
+                biomes.addAll(((Biomes) child).biomes);
+            }
+        }
+        if (biomes != null) {
+            if (and && biomes.isEmpty()) return NONE;
+            children.add(biomes(biomes));
+        }
+        for (BiomeExpression child : children) {
+            if (child instanceof Not && children.contains(((Not) child).child)) return absorbing;
+        }
+        if (children.isEmpty()) return neutral;
+        if (children.size() == 1) return children.iterator().next();
+        return INTERNER.intern(new Combination(and, ImmutableSet.copyOf(children)));
+    }
+
+    /**
+     * Reads an expression written by {@link BiomeExpression#toJson()}
+     * @param json the JSON form
+     * @return the interned expression
+     * @throws JsonParseException if the JSON form is invalid or names an unknown {@link Biome} or {@link BiomeDictionary.Type}
+     */
+    static BiomeExpression fromJson(@Nonnull JsonElement json) {
+        if (json.isJsonPrimitive() && json.getAsJsonPrimitive().isBoolean()) {
+            return json.getAsBoolean() ? ALL : NONE;
+        }
+        if (!json.isJsonObject() || json.getAsJsonObject().size() != 1) {
+            throw new JsonParseException("Expected true, false or an object with one of biomes, type, and, or, not: " + json);
+        }
+        Map.Entry<String, JsonElement> entry = json.getAsJsonObject().entrySet().iterator().next();
+        JsonElement value = entry.getValue();
+        switch (entry.getKey()) {
+            case "biomes": {
+                List<Biome> biomes = new ArrayList<>();
+                for (JsonElement element : array(value, "biomes")) {
+                    String string = string(element, "biome name");
+                    ResourceLocation name = ResourceLocation.tryCreate(string);
+                    if (name == null) throw new JsonParseException("Invalid biome name " + string);
+                    if (!ForgeRegistries.BIOMES.containsKey(name)) throw new JsonParseException("Unknown biome " + name);
+                    biomes.add(ForgeRegistries.BIOMES.getValue(name));
+                }
+                return biomes(biomes);
+            }
+            case "type": {
+                String name = string(value, "type");
+                for (BiomeDictionary.Type type : BiomeDictionary.Type.getAll()) {
+                    if (type.getName().equals(name)) return type(type);
+                }
+                throw new JsonParseException("Unknown biome type " + name);
+            }
+            case "and":
+            case "or": {
+                List<BiomeExpression> children = new ArrayList<>();
+                for (JsonElement element : array(value, entry.getKey())) {
+                    children.add(fromJson(element));
+                }
+                return combine(entry.getKey().equals("and"), children);
+            }
+            case "not":
+                return not(fromJson(value));
+            default:
+                throw new JsonParseException("Unknown biome filter " + entry.getKey());
+        }
+    }
+
+    private static JsonArray array(JsonElement json, String name) {
+        if (!json.isJsonArray()) throw new JsonParseException("Expected " + name + " to be an array, was " + json);
+        return json.getAsJsonArray();
+    }
+
+    private static String string(JsonElement json, String name) {
+        if (!json.isJsonPrimitive() || !json.getAsJsonPrimitive().isString()) {
+            throw new JsonParseException("Expected " + name + " to be a string, was " + json);
+        }
+        return json.getAsString();
+    }
+
+    /**
+     * Checks if this expression can be written to JSON
+     * @return {@code false} if this expression contains an opaque {@link Predicate}
+     */
+    abstract boolean isSerializable();
+
+    /**
+     * Writes this expression to JSON
+     * @return the JSON form
+     * @throws UnsupportedOperationException if this expression is not {@link BiomeExpression#isSerializable() serializable}
+     */
+    abstract JsonElement toJson();
+
+    /**
+     * Evaluates this expression without the compiled result
+     */
+    abstract boolean evaluate(Biome biome);
+
+    /**
+     * Computes the compiled result from the compiled results of the children
+     * @param size the number of registry ids to evaluate
+     */
+    BitSet compile(int size) {
+        BitSet bits = new BitSet(size);
+        for (Biome biome : ForgeRegistries.BIOMES) {
+            int id = Registry.BIOME.getId(biome);
+            if (id >= 0 && id < size && evaluate(biome)) bits.set(id);
+        }
+        return bits;
+    }
+
+    /**
+     * Evaluates this expression once for every registered {@link Biome}, unless that already happened.<br>
+     * The result is shared by all {@link BiomeFilter BiomeFilters} with this expression.
+     */
+    final void compile() {
+        if (compiled != null) return;
+        int size = 0;
+        for (Biome biome : ForgeRegistries.BIOMES) {
+            size = Math.max(size, Registry.BIOME.getId(biome) + 1);
+        }
+        compiled(size);
+    }
+
+    /**
+     * Gets the compiled result for the given number of registry ids, compiling it if needed
+     */
+    final BitSet compiled(int size) {
+        Compiled current = compiled;
+        if (current != null && current.size == size) return current.bits;
+        BitSet bits = compile(size);
+        compiled = new Compiled(bits, size);
+        return bits;
+    }
+
+    /**
+     * Checks if this expression has been compiled
+     */
+    final boolean isCompiled() {
+        return compiled != null;
+    }
+
+    /**
+     * Tests the given {@link Biome}, with a single bit lookup if this expression is compiled and the {@link Biome} was registered at that time
+     */
+    final boolean test(Biome biome) {
+        Compiled current = compiled;
+        if (current != null) {
+            int id = Registry.BIOME.getId(biome);
+            if (id >= 0 && id < current.size) return current.bits.get(id);
+        }
+        return evaluate(biome);
+    }
+
+    @Override
+    public final int hashCode() {
+        return hash;
+    }
+
+    /**
+     * The result of evaluating an expression for every registry id below {@link Compiled#size}
+     */
+    private static final class Compiled {
+        private final BitSet bits;
+        private final int size;
+
+        private Compiled(BitSet bits, int size) {
+            this.bits = bits;
+            this.size = size;
+        }
+    }
+
+    private static final class Constant extends BiomeExpression {
+        private final boolean value;
+
+        private Constant(boolean value) {
+            super(Boolean.hashCode(value));
+            this.value = value;
+        }
+
+        @Override
+        boolean isSerializable() {
+            return true;
+        }
+
+        @Override
+        JsonElement toJson() {
+            return new JsonPrimitive(value);
+        }
+
+        @Override
+        boolean evaluate(Biome biome) {
+            return value;
+        }
+
+        @Override
+        BitSet compile(int size) {
+            BitSet bits = new BitSet(size);
+            if (value) bits.set(0, size);
+            return bits;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Constant && ((Constant) other).value == value;
+        }
+    }
+
+    private static final class Biomes extends BiomeExpression {
+        private final ImmutableSet<Biome> biomes;
+
+        private Biomes(ImmutableSet<Biome> biomes) {
+            super(biomes.hashCode());
+            this.biomes = biomes;
+        }
+
+        @Override
+        boolean isSerializable() {
+            for (Biome biome : biomes) {
+                if (biome.getRegistryName() == null) return false;
+            }
+            return true;
+        }
+
+        @Override
+        JsonElement toJson() {
+            List<String> names = new ArrayList<>();
+            for (Biome biome : biomes) {
+                names.add(String.valueOf(biome.getRegistryName()));
+            }
+            Collections.sort(names);
+            JsonArray array = new JsonArray();
+            names.forEach(array::add);
+            JsonObject object = new JsonObject();
+            object.add("biomes", array);
+            return object;
+        }
+
+        @Override
+        boolean evaluate(Biome biome) {
+            return biomes.contains(biome);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Biomes && ((Biomes) other).biomes.equals(biomes);
+        }
+    }
+
+    private static final class Type extends BiomeExpression {
+        private final BiomeDictionary.Type type;
+
+        private Type(BiomeDictionary.Type type) {
+            super(31 + type.hashCode());
+            this.type = type;
+        }
+
+        @Override
+        boolean isSerializable() {
+            return true;
+        }
+
+        @Override
+        JsonElement toJson() {
+            JsonObject object = new JsonObject();
+            object.addProperty("type", type.getName());
+            return object;
+        }
+
+        @Override
+        boolean evaluate(Biome biome) {
+            return BiomeDictionary.hasType(biome, type);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Type && ((Type) other).type == type;
+        }
+    }
+
+    private static final class Not extends BiomeExpression {
+        private final BiomeExpression child;
+
+        private Not(BiomeExpression child) {
+            super(~child.hashCode());
+            this.child = child;
+        }
+
+        @Override
+        boolean isSerializable() {
+            return child.isSerializable();
+        }
+
+        @Override
+        JsonElement toJson() {
+            JsonObject object = new JsonObject();
+            object.add("not", child.toJson());
+            return object;
+        }
+
+        @Override
+        boolean evaluate(Biome biome) {
+            return !child.test(biome);
+        }
+
+        @Override
+        BitSet compile(int size) {
+            BitSet bits = (BitSet) child.compiled(size).clone();
+            bits.flip(0, size);
+            return bits;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Not && ((Not) other).child == child;
+        }
+    }
+
+    private static final class Combination extends BiomeExpression {
+        private final boolean and;
+        private final ImmutableSet<BiomeExpression> children;
+
+        private Combination(boolean and, ImmutableSet<BiomeExpression> children) {
+            super(children.hashCode() * (and ? 17 : 19));
+            this.and = and;
+            this.children = children;
+        }
+
+        @Override
+        boolean isSerializable() {
+            for (BiomeExpression child : children) {
+                if (!child.isSerializable()) return false;
+            }
+            return true;
+        }
+
+        /**
+         * Writes the children sorted by their JSON form, so equal expressions are always written the same way
+         */
+        @Override
+        JsonElement toJson() {
+            List<JsonElement> elements = new ArrayList<>(children.size());
+            for (BiomeExpression child : children) {
+                elements.add(child.toJson());
+            }
+            elements.sort(Comparator.comparing(JsonElement::toString));
+            JsonArray array = new JsonArray();
+            elements.forEach(array::add);
+            JsonObject object = new JsonObject();
+            object.add(and ? "and" : "or", array);
+            return object;
+        }
+
+        @Override
+        boolean evaluate(Biome biome) {
+            for (BiomeExpression child : children) {
+                if (child.test(biome) != and) return !and;
+            }
+            return and;
+        }
+
+        @Override
+        BitSet compile(int size) {
+            BitSet bits = null;
+            for (BiomeExpression child : children) {
+                BitSet childBits = child.compiled(size);
+                if (bits == null) {
+                    bits = (BitSet) childBits.clone();
+                } else if (and) {
+                    bits.and(childBits);
+                } else {
+                    bits.or(childBits);
+                }
+            }
+            return bits;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Combination)) return false;
+            Combination that = (Combination) other;
+            return that.and == and && that.children.equals(children);
+        }
+    }
+
+    /**
+     * A {@link Predicate} that can only be compared by identity
+     */
+    private static final class Opaque extends BiomeExpression {
+        private final Predicate<? super Biome> predicate;
+
+        private Opaque(Predicate<? super Biome> predicate) {
+            super(predicate.hashCode());
+            this.predicate = predicate;
+        }
+
+        @Override
+        boolean isSerializable() {
+            return false;
+        }
+
+        @Override
+        JsonElement toJson() {
+            throw new UnsupportedOperationException("A biome filter with a custom predicate cannot be serialized");
+        }
+
+        @Override
+        boolean evaluate(Biome biome) {
+            return predicate.test(biome);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Opaque && ((Opaque) other).predicate.equals(predicate);
+        }
+    }
+}
@@ -1,19 +1,22 @@
 package minecraftschurli.simpleorelib;
 
-import com.google.common.base.Predicates;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
 import net.minecraft.world.biome.Biome;
 import net.minecraft.world.biome.Biomes;
 import net.minecraftforge.common.BiomeDictionary;
+import net.minecraftforge.registries.ForgeRegistries;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Arrays;
-import java.util.Objects;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
 /**
  * A {@link BiomeFilter} is a concept for filtering {@link Biome Biomes}.<br>
+ * The condition is kept as a normalised, interned expression, so structurally equal {@link BiomeFilter BiomeFilters} are equal,
+ * share their compiled result and can be written to JSON unless they wrap a custom {@link Predicate}.<br>
  * This class also provides some default {@link BiomeFilter BiomeFilters}
  *
  * @author Minecraftschurli
@@ -24,37 +27,37 @@ public class BiomeFilter implements Predicate<Biome>, Function<Biome, Boolean> {
     /**
      * A {@link BiomeFilter} matching all {@link Biome Biomes}
      */
-    public static final BiomeFilter ALL = new BiomeFilter(-1);
+    public static final BiomeFilter ALL = new BiomeFilter(-1, BiomeExpression.ALL);
 
     /**
      * A {@link BiomeFilter} matching all ocean {@link Biome Biomes}
      */
-    public static final BiomeFilter OCEAN = new BiomeFilter(biome -> BiomeDictionary.hasType(biome, BiomeDictionary.Type.OCEAN));
+    public static final BiomeFilter OCEAN = ofTypes(BiomeDictionary.Type.OCEAN);
 
     /**
      * A {@link BiomeFilter} matching all river {@link Biome Biomes}
      */
-    public static final BiomeFilter RIVER = new BiomeFilter(biome -> BiomeDictionary.hasType(biome, BiomeDictionary.Type.RIVER));
+    public static final BiomeFilter RIVER = ofTypes(BiomeDictionary.Type.RIVER);
 
     /**
      * A {@link BiomeFilter} matching all sandy {@link Biome Biomes}
      */
-    public static final BiomeFilter SANDY = new BiomeFilter(biome -> BiomeDictionary.hasType(biome, BiomeDictionary.Type.SANDY));
+    public static final BiomeFilter SANDY = ofTypes(BiomeDictionary.Type.SANDY);
 
     /**
      * A {@link BiomeFilter} matching all nether {@link Biome Biomes}
      */
-    public static final BiomeFilter NETHER = new BiomeFilter(biome -> BiomeDictionary.hasType(biome, BiomeDictionary.Type.NETHER));
+    public static final BiomeFilter NETHER = ofTypes(BiomeDictionary.Type.NETHER);
 
     /**
      * A {@link BiomeFilter} matching all overworld {@link Biome Biomes}
      */
-    public static final BiomeFilter OVERWORLD = new BiomeFilter(biome -> BiomeDictionary.hasType(biome, BiomeDictionary.Type.OVERWORLD));
+    public static final BiomeFilter OVERWORLD = ofTypes(BiomeDictionary.Type.OVERWORLD);
 
     /**
      * A {@link BiomeFilter} matching all end {@link Biome Biomes}
      */
-    public static final BiomeFilter THE_END = new BiomeFilter(biome -> BiomeDictionary.hasType(biome, BiomeDictionary.Type.END));
+    public static final BiomeFilter THE_END = ofTypes(BiomeDictionary.Type.END);
 
     /**
      * A {@link BiomeFilter} matching all vanilla desert {@link Biome Biomes}
@@ -90,15 +93,15 @@ public class BiomeFilter implements Predicate<Biome>, Function<Biome, Boolean> {
             Biomes.MODIFIED_GRAVELLY_MOUNTAINS
     );
 
-    private final Predicate<Biome> predicate;
-    private int priority;
+    private final BiomeExpression expression;
+    private volatile int priority;
 
     /**
      * Creates a {@link BiomeFilter} that matches all provided {@link Biome Biomes}
      * @param biomes the {@link Biome Biomes} the {@link BiomeFilter} should match
      */
     public BiomeFilter(@Nonnull Biome... biomes) {
-        this(Predicates.in(Arrays.asList(biomes)));
+        this(0, biomes);
     }
 
     /**
@@ -115,7 +118,7 @@ public class BiomeFilter implements Predicate<Biome>, Function<Biome, Boolean> {
      * @param biomes   the {@link Biome Biomes} the {@link BiomeFilter} should match
      */
     public BiomeFilter(int priority, @Nonnull Biome... biomes) {
-        this(priority, Predicates.in(Arrays.asList(biomes)));
+        this(priority, BiomeExpression.biomes(Arrays.asList(biomes)));
     }
 
     /**
@@ -124,10 +127,91 @@ public class BiomeFilter implements Predicate<Biome>, Function<Biome, Boolean> {
      * @param biomePredicate the {@link Predicate} that is used to filter the {@link Biome Biomes}
      */
     public BiomeFilter(int priority, @Nonnull Predicate<Biome> biomePredicate) {
-        this.predicate = biomePredicate;
+        this(priority, BiomeExpression.of(biomePredicate));
+    }
+
+    private BiomeFilter(int priority, @Nonnull BiomeExpression expression) {
+        this.expression = expression;
         this.priority = priority;
     }
 
+    /**
+     * Creates a {@link BiomeFilter} that matches all {@link Biome Biomes} having any of the given {@link BiomeDictionary.Type Types}
+     * @param types the {@link BiomeDictionary.Type Types} the {@link BiomeFilter} should match
+     * @return the created {@link BiomeFilter}
+     */
+    @Nonnull
+    public static BiomeFilter ofTypes(@Nonnull BiomeDictionary.Type... types) {
+        BiomeExpression[] expressions = new BiomeExpression[types.length];
+        for (int i = 0; i < types.length; i++) {
+            expressions[i] = BiomeExpression.type(types[i]);
+        }
+        return new BiomeFilter(0, BiomeExpression.or(expressions));
+    }
+
+    /**
+     * Reads a {@link BiomeFilter} from the JSON form written by {@link BiomeFilter#toJson()}.<br>
+     * The form is {@code true}, {@code false}, {@code {"biomes": ["minecraft:desert", ...]}}, {@code {"type": "OCEAN"}},
+     * {@code {"and": [...]}}, {@code {"or": [...]}} or {@code {"not": ...}}.
+     * @param json     the JSON form
+     * @param priority the priority of the {@link BiomeFilter}
+     * @return the read {@link BiomeFilter}
+     * @throws JsonParseException if the JSON form is invalid or names an unknown {@link Biome} or {@link BiomeDictionary.Type Type}
+     */
+    @Nonnull
+    public static BiomeFilter fromJson(@Nonnull JsonElement json, int priority) {
+        return new BiomeFilter(priority, BiomeExpression.fromJson(json));
+    }
+
+    /**
+     * Writes the condition of this {@link BiomeFilter} to JSON; the priority is not included
+     * @return the JSON form
+     * @throws UnsupportedOperationException if this {@link BiomeFilter} is not {@link BiomeFilter#isSerializable() serializable}
+     */
+    @Nonnull
+    public JsonElement toJson() {
+        return expression.toJson();
+    }
+
+    /**
+     * Checks if this {@link BiomeFilter} can be written to JSON
+     * @return {@code false} if this {@link BiomeFilter} contains a custom {@link Predicate} or an unregistered {@link Biome}
+     */
+    public boolean isSerializable() {
+        return expression.isSerializable();
+    }
+
+    /**
+     * Gets the interned expression of this {@link BiomeFilter}
+     */
+    BiomeExpression getExpression() {
+        return expression;
+    }
+
+    /**
+     * Compiles this {@link BiomeFilter} by evaluating it once for every registered {@link Biome}.<br>
+     * The result is stored as a bitset indexed by the registry id of the {@link Biome},
+     * so {@link BiomeFilter#test(Biome)} on the compiled {@link BiomeFilter} is a single bit lookup.
+     * The result belongs to the interned expression and is shared by every equal {@link BiomeFilter} and every combination containing it.
+     * {@link Biome Biomes} registered after compilation fall back to evaluating the expression.<br>
+     * This should only be called once {@link ForgeRegistries#BIOMES} is frozen.
+     * @return {@code this}
+     */
+    @Nonnull
+    public BiomeFilter compile() {
+        expression.compile();
+        return this;
+    }
+
+    /**
+     * Checks if this {@link BiomeFilter} is compiled
+     * @return {@code true} if this {@link BiomeFilter} is compiled
+     * @see BiomeFilter#compile()
+     */
+    public boolean isCompiled() {
+        return expression.isCompiled();
+    }
+
     /**
      * Negates this {@link BiomeFilter}
      * @return the negated {@link BiomeFilter}
@@ -135,7 +219,7 @@ public class BiomeFilter implements Predicate<Biome>, Function<Biome, Boolean> {
     @Nonnull
     @Override
     public BiomeFilter negate() {
-        return new BiomeFilter(predicate.negate());
+        return new BiomeFilter(0, BiomeExpression.not(expression));
     }
 
     /**
@@ -145,7 +229,7 @@ public class BiomeFilter implements Predicate<Biome>, Function<Biome, Boolean> {
      */
     @Nonnull
     public BiomeFilter or(@Nonnull BiomeFilter other) {
-        return new BiomeFilter(predicate.or(other.predicate));
+        return new BiomeFilter(0, BiomeExpression.or(expression, other.expression));
     }
 
     /**
@@ -155,7 +239,7 @@ public class BiomeFilter implements Predicate<Biome>, Function<Biome, Boolean> {
      */
     @Nonnull
     public BiomeFilter and(@Nonnull BiomeFilter other) {
-        return new BiomeFilter(predicate.and(other.predicate));
+        return new BiomeFilter(0, BiomeExpression.and(expression, other.expression));
     }
 
     /**
@@ -166,7 +250,7 @@ public class BiomeFilter implements Predicate<Biome>, Function<Biome, Boolean> {
     @Nonnull
     @Override
     public BiomeFilter or(@Nonnull Predicate<? super Biome> other) {
-        return new BiomeFilter(predicate.or(other));
+        return new BiomeFilter(0, BiomeExpression.or(expression, BiomeExpression.of(other)));
     }
 
     /**
@@ -177,7 +261,7 @@ public class BiomeFilter implements Predicate<Biome>, Function<Biome, Boolean> {
     @Nonnull
     @Override
     public BiomeFilter and(@Nonnull Predicate<? super Biome> other) {
-        return new BiomeFilter(predicate.and(other));
+        return new BiomeFilter(0, BiomeExpression.and(expression, BiomeExpression.of(other)));
     }
 
     /**
@@ -188,8 +272,7 @@ public class BiomeFilter implements Predicate<Biome>, Function<Biome, Boolean> {
     @Override
     public boolean test(@Nullable Biome biome) {
         if (biome == null) return false;
-        if (this == ALL) return true;
-        return predicate.test(biome);
+        return expression.test(biome);
     }
 
     /**
@@ -244,7 +327,7 @@ public class BiomeFilter implements Predicate<Biome>, Function<Biome, Boolean> {
         if (!(other instanceof BiomeFilter)) return false;
         BiomeFilter that = (BiomeFilter) other;
         return priority == that.priority &&
-                predicate.equals(that.predicate);
+                expression == that.expression;
     }
 
     /**
@@ -284,7 +367,7 @@ public class BiomeFilter implements Predicate<Biome>, Function<Biome, Boolean> {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(predicate, priority);
+        return 31 * expression.hashCode() + priority;
     }
 
     /**
@@ -296,7 +379,9 @@ public class BiomeFilter implements Predicate<Biome>, Function<Biome, Boolean> {
     }
 
     /**
-     * Sets the ordering priority for this {@link BiomeFilter}
+     * Sets the ordering priority for this {@link BiomeFilter}.<br>
+     * The priority is read once when a filler is registered with {@link SimpleOreLib#addFiller},
+     * so changing it afterwards does not reorder fillers that are already registered.
      * @param priority the ordering priority for this {@link BiomeFilter}
      * @return {@code this}
      */
@@ -0,0 +1,158 @@
+package minecraftschurli.simpleorelib;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.tags.Tag;
+import net.minecraft.world.gen.feature.OreFeatureConfig;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+/**
+ * A {@link Predicate} for {@link OreFeatureConfig.FillerBlockType fillers} that matches any of a set of {@link Block Blocks} and {@link Tag Tags}.<br>
+ * The matching {@link BlockState BlockStates} are resolved into a bitset over the {@link Block#getStateId(BlockState) state ids},
+ * so every check is a single lookup instead of a chain of predicates.
+ * The bitset is built on first use and rebuilt after the {@link Tag Tags} were reloaded.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+public final class BlockStateMatcher implements Predicate<BlockState> {
+    private static final List<BlockStateMatcher> MATCHERS = new CopyOnWriteArrayList<>();
+
+    private final List<Block> blocks;
+    private final List<Tag<Block>> tags;
+    @Nullable
+    private volatile long[] states;
+    @Nullable
+    private volatile BlockState[] matching;
+
+    private BlockStateMatcher(List<Block> blocks, List<Tag<Block>> tags) {
+        this.blocks = blocks;
+        this.tags = tags;
+    }
+
+    /**
+     * Creates a new {@link Builder}
+     * @return the new {@link Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Rebuilds the bitsets of all matchers on their next use
+     */
+    static void invalidateAll() {
+        for (BlockStateMatcher matcher : MATCHERS) {
+            matcher.states = null;
+            matcher.matching = null;
+        }
+    }
+
+    /**
+     * Gets every {@link BlockState} this matcher accepts, resolved together with the bitset and rebuilt with it
+     * @return the accepted {@link BlockState BlockStates}; must not be modified
+     */
+    BlockState[] getMatchingStates() {
+        BlockState[] result = matching;
+        if (result == null) {
+            List<BlockState> states = new ArrayList<>();
+            for (BlockState state : Block.BLOCK_STATE_IDS) {
+                if (test(state)) states.add(state);
+            }
+            result = states.toArray(new BlockState[0]);
+            matching = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean test(@Nullable BlockState state) {
+        if (state == null) return false;
+        long[] bits = states;
+        if (bits == null) {
+            bits = resolve();
+            states = bits;
+        }
+        int id = Block.getStateId(state);
+        return id >= 0 && (id >> 6) < bits.length && (bits[id >> 6] & (1L << id)) != 0;
+    }
+
+    private long[] resolve() {
+        long[] bits = new long[(Block.BLOCK_STATE_IDS.size() + 63) >> 6];
+        for (Block block : blocks) {
+            set(bits, block);
+        }
+        for (Tag<Block> tag : tags) {
+            for (Block block : tag.getAllElements()) {
+                set(bits, block);
+            }
+        }
+        return bits;
+    }
+
+    private static void set(long[] bits, Block block) {
+        for (BlockState state : block.getStateContainer().getValidStates()) {
+            int id = Block.getStateId(state);
+            if (id >= 0 && (id >> 6) < bits.length) bits[id >> 6] |= 1L << id;
+        }
+    }
+
+    /**
+     * A builder for {@link BlockStateMatcher BlockStateMatchers}
+     */
+    public static final class Builder {
+        private final List<Block> blocks = new ArrayList<>();
+        private final List<Tag<Block>> tags = new ArrayList<>();
+
+        private Builder() {}
+
+        /**
+         * Adds all {@link BlockState BlockStates} of the given {@link Block Blocks}
+         * @param blocks the {@link Block Blocks} to match
+         * @return this {@link Builder} instance
+         */
+        public Builder add(@Nonnull Block... blocks) {
+            for (Block block : blocks) {
+                this.blocks.add(block);
+            }
+            return this;
+        }
+
+        /**
+         * Adds all {@link BlockState BlockStates} of the {@link Block Blocks} in the given {@link Tag}.<br>
+         * Use a {@link net.minecraft.tags.BlockTags.Wrapper BlockTags.Wrapper}, so the contents follow data pack reloads.
+         * @param tag the {@link Tag} to match
+         * @return this {@link Builder} instance
+         */
+        public Builder add(@Nonnull Tag<Block> tag) {
+            this.tags.add(tag);
+            return this;
+        }
+
+        /**
+         * Creates the {@link BlockStateMatcher}
+         * @return the created {@link BlockStateMatcher}
+         */
+        public BlockStateMatcher build() {
+            BlockStateMatcher matcher = new BlockStateMatcher(new ArrayList<>(blocks), new ArrayList<>(tags));
+            MATCHERS.add(matcher);
+            return matcher;
+        }
+
+        /**
+         * Creates a {@link OreFeatureConfig.FillerBlockType filler} backed by a {@link BlockStateMatcher}
+         * @param enumName the enum constant name of the filler, has to be unique
+         * @param name     the serialized name of the filler, has to be unique
+         * @return the created {@link OreFeatureConfig.FillerBlockType filler}
+         */
+        public OreFeatureConfig.FillerBlockType buildFiller(@Nonnull String enumName, @Nonnull String name) {
+            return OreFeatureConfig.FillerBlockType.create(enumName, name, build());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package minecraftschurli.simpleorelib;
+
+import com.google.common.hash.Hasher;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.gen.feature.OreFeatureConfig;
+import net.minecraftforge.registries.ForgeRegistries;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Priority sorted table of the registered {@link OreFeatureConfig.FillerBlockType fillers}
+ * with a per {@link Biome} cache of the resolved filler.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+final class FillerIndex {
+    /**
+     * Sorts by priority, then by the enum name of the filler, so ties resolve the same way on every start.
+     * Entries that are still equal keep their registration order.
+     */
+    private static final Comparator<Entry> ORDER = Comparator.<Entry>comparingInt(entry -> entry.priority)
+            .thenComparing(entry -> entry.filler.name());
+
+    private volatile Entry[] entries = new Entry[0];
+    @Nullable
+    private volatile OreFeatureConfig.FillerBlockType[] cache;
+
+    /**
+     * Adds a filler for the given {@link BiomeFilter} unless an equal {@link BiomeFilter} already has one.
+     * The priority of the {@link BiomeFilter} is copied, so later calls to {@link BiomeFilter#setPriority} do not affect this index.
+     * If the per {@link Biome} cache is baked, only the {@link Biome Biomes} the {@link BiomeFilter} matches are resolved again.
+     * @param filter the {@link BiomeFilter} to register the filler for
+     * @param filler the filler to register
+     * @return {@code true} if the filler was added
+     */
+    synchronized boolean add(@Nonnull BiomeFilter filter, @Nonnull OreFeatureConfig.FillerBlockType filler) {
+        int priority = filter.getPriority();
+        Entry[] current = entries;
+        for (Entry entry : current) {
+            if (entry.priority == priority && entry.filter.getExpression() == filter.getExpression()) return false;
+        }
+        Entry[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = new Entry(filter, filler, priority);
+        Arrays.sort(updated, ORDER);
+        entries = updated;
+        OreFeatureConfig.FillerBlockType[] resolved = cache;
+        if (resolved != null) {
+            BiomeFilter compiled = filter.compile();
+            resolved = resolved.clone();
+            for (Biome biome : ForgeRegistries.BIOMES) {
+                int id = Registry.BIOME.getId(biome);
+                if (id >= 0 && id < resolved.length && compiled.test(biome)) {
+                    resolved[id] = resolve(updated, biome);
+                }
+            }
+            cache = resolved;
+        }
+        return true;
+    }
+
+    /**
+     * Resolves the filler for every registered {@link Biome} and caches the result by registry id.
+     * This should only be called once {@link ForgeRegistries#BIOMES} is frozen.
+     */
+    synchronized void bake() {
+        Entry[] current = entries.clone();
+        for (int i = 0; i < current.length; i++) {
+            current[i] = current[i].compile();
+        }
+        entries = current;
+        OreFeatureConfig.FillerBlockType[] resolved = new OreFeatureConfig.FillerBlockType[0];
+        for (Biome biome : ForgeRegistries.BIOMES) {
+            int id = Registry.BIOME.getId(biome);
+            if (id < 0) continue;
+            if (id >= resolved.length) resolved = Arrays.copyOf(resolved, id + 1);
+            resolved[id] = resolve(current, biome);
+        }
+        cache = resolved;
+    }
+
+    /**
+     * Gets the filler for the given {@link Biome}
+     * @param biome the {@link Biome} to get the filler for
+     * @return the filler with the lowest priority whose {@link BiomeFilter} matches; {@link OreFeatureConfig.FillerBlockType#NATURAL_STONE NATURAL_STONE} if there is none
+     */
+    @Nonnull
+    OreFeatureConfig.FillerBlockType get(@Nonnull Biome biome) {
+        OreFeatureConfig.FillerBlockType[] resolved = cache;
+        if (resolved != null) {
+            int id = Registry.BIOME.getId(biome);
+            if (id >= 0 && id < resolved.length && resolved[id] != null) return resolved[id];
+        }
+        return resolve(entries, biome);
+    }
+
+    /**
+     * Adds the priorities, fillers and serializable {@link BiomeFilter BiomeFilters} of this index, in lookup order, to the given {@link Hasher}
+     * @param hasher the {@link Hasher} to add to
+     */
+    void hash(@Nonnull Hasher hasher) {
+        Entry[] current = entries;
+        hasher.putInt(current.length);
+        for (Entry entry : current) {
+            hasher.putInt(entry.priority).putUnencodedChars(entry.filler.name());
+            hasher.putUnencodedChars(entry.filter.isSerializable() ? entry.filter.toJson().toString() : "");
+        }
+    }
+
+    private static OreFeatureConfig.FillerBlockType resolve(Entry[] entries, Biome biome) {
+        for (Entry entry : entries) {
+            if (entry.filter.test(biome)) return entry.filler;
+        }
+        return OreFeatureConfig.FillerBlockType.NATURAL_STONE;
+    }
+
+    private static final class Entry {
+        private final BiomeFilter filter;
+        private final OreFeatureConfig.FillerBlockType filler;
+        private final int priority;
+
+        private Entry(BiomeFilter filter, OreFeatureConfig.FillerBlockType filler, int priority) {
+            this.filter = filter;
+            this.filler = filler;
+            this.priority = priority;
+        }
+
+        private Entry compile() {
+            return filter.isCompiled() ? this : new Entry(filter.compile(), filler, priority);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package minecraftschurli.simpleorelib;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.gen.feature.OreFeatureConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Remembers for one decorated chunk and its neighbours which chunk sections contain a block a filler accepts.<br>
+ * Empty sections are rejected without looking at them, other sections are checked once per filler by looking up
+ * the {@link BlockState BlockStates} the filler accepts in the palette of the section instead of reading its 4096 blocks.
+ * A palette can still list a state that was replaced since and a section with the global palette contains every state,
+ * so a section can be treated as a match without having an accepted block, but never the other way around.
+ * A vein whose bounding box only touches sections without an accepted block cannot place anything and is skipped.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+final class FillerSections {
+    private static final byte UNKNOWN = 0;
+    private static final byte MATCH = 1;
+    private static final byte MISS = 2;
+    private static final int SECTIONS = 16;
+    /**
+     * The accepted states of fillers that are not backed by a {@link BlockStateMatcher}, cleared when the tags are reloaded
+     */
+    private static final Map<OreFeatureConfig.FillerBlockType, BlockState[]> ACCEPTED = new ConcurrentHashMap<>();
+
+    private final IWorld world;
+    private final int chunkX;
+    private final int chunkZ;
+    private OreFeatureConfig.FillerBlockType[] fillers = new OreFeatureConfig.FillerBlockType[1];
+    private byte[][] states = new byte[1][];
+    private int size;
+
+    /**
+     * @param world  the world that is decorated
+     * @param chunkX the x coordinate of the decorated chunk
+     * @param chunkZ the z coordinate of the decorated chunk
+     */
+    FillerSections(IWorld world, int chunkX, int chunkZ) {
+        this.world = world;
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+    }
+
+    /**
+     * Checks whether a vein of the given entry at the given origin can reach any block its filler accepts
+     * @param entry  the entry of the vein
+     * @param origin the origin of the vein
+     * @return {@code false} if every section the vein can touch has no block the filler accepts
+     */
+    boolean canPlace(OreEntry entry, BlockPos origin) {
+        byte[] sections = sections(entry.filler);
+        BlockState[] accepted = accepted(entry.filler);
+        int minX = Math.max((origin.getX() - entry.horizontalReach) >> 4, chunkX - 1);
+        int maxX = Math.min((origin.getX() + entry.horizontalReach) >> 4, chunkX + 1);
+        int minZ = Math.max((origin.getZ() - entry.horizontalReach) >> 4, chunkZ - 1);
+        int maxZ = Math.min((origin.getZ() + entry.horizontalReach) >> 4, chunkZ + 1);
+        int minY = Math.max((origin.getY() - entry.reach) >> 4, 0);
+        int maxY = Math.min((origin.getY() + entry.reach) >> 4, SECTIONS - 1);
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int y = minY; y <= maxY; y++) {
+                    int index = ((x - chunkX + 1) * 3 + z - chunkZ + 1) * SECTIONS + y;
+                    byte state = sections[index];
+                    if (state == UNKNOWN) {
+                        state = check(x, z, y, accepted);
+                        sections[index] = state;
+                    }
+                    if (state == MATCH) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private byte[] sections(OreFeatureConfig.FillerBlockType filler) {
+        for (int i = 0; i < size; i++) {
+            if (fillers[i] == filler) return states[i];
+        }
+        if (size == fillers.length) {
+            fillers = Arrays.copyOf(fillers, size * 2);
+            states = Arrays.copyOf(states, size * 2);
+        }
+        fillers[size] = filler;
+        states[size] = new byte[9 * SECTIONS];
+        return states[size++];
+    }
+
+    private byte check(int x, int z, int y, BlockState[] accepted) {
+        ChunkSection section = world.getChunk(x, z).getSections()[y];
+        if (ChunkSection.isEmpty(section)) return MISS;
+        for (BlockState state : accepted) {
+            if (section.contains(state)) return MATCH;
+        }
+        return MISS;
+    }
+
+    /**
+     * Forgets the accepted states of every filler, so predicates that depend on {@link net.minecraft.tags.Tag Tags} are resolved again
+     */
+    static void invalidateAll() {
+        ACCEPTED.clear();
+    }
+
+    /**
+     * Gets every registered {@link BlockState} the given filler accepts;
+     * {@link BlockStateMatcher} fillers reuse the states of their matcher, others are computed once until the tags are reloaded
+     */
+    private static BlockState[] accepted(OreFeatureConfig.FillerBlockType filler) {
+        Predicate<BlockState> target = filler.getTargetBlockPredicate();
+        if (target instanceof BlockStateMatcher) return ((BlockStateMatcher) target).getMatchingStates();
+        return ACCEPTED.computeIfAbsent(filler, key -> collect(target));
+    }
+
+    private static BlockState[] collect(Predicate<BlockState> target) {
+        List<BlockState> accepted = new ArrayList<>();
+        for (BlockState state : Block.BLOCK_STATE_IDS) {
+            if (target.test(state)) accepted.add(state);
+        }
+        return accepted.toArray(new BlockState[0]);
+    }
+}
@@ -0,0 +1,188 @@
+package minecraftschurli.simpleorelib;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.SharedSeedRandom;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.gen.SimplexNoiseGenerator;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Generates the ore bodies of {@link VeinType#LARGE} ores from a seeded noise field.<br>
+ * The field is sampled every 4 blocks for a whole region of 8 by 8 chunks when the first chunk of the region needs it,
+ * and kept in a bounded cache shared by all worldgen threads, so neighbouring chunks only interpolate it.
+ * The cache size is set with {@code -Dsimpleorelib.largeVeins.cache} (default 256 regions).
+ * One noise decides where a body exists and how thick it is, a second one the height of its center.
+ * Every chunk only places the blocks inside itself, and whether a position inside a body becomes ore is decided by a hash of the position,
+ * so the result does not depend on the order in which chunks are generated.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+final class LargeVeinField {
+    private static final int REGION_SHIFT = 7;
+    private static final int CELL_SHIFT = 2;
+    private static final int CELLS = 1 << (REGION_SHIFT - CELL_SHIFT);
+    private static final int SIZE = CELLS + 1;
+    private static final double SCALE = 1.0D / 96.0D;
+    private static final float THRESHOLD = 0.4F;
+    private static final int HEIGHT = 256;
+
+    private static final LoadingCache<Key, Region> CACHE = CacheBuilder.newBuilder()
+            .maximumSize(Integer.getInteger("simpleorelib.largeVeins.cache", 256))
+            .build(CacheLoader.from(LargeVeinField::compute));
+
+    private LargeVeinField() {}
+
+    /**
+     * Places the part of the ore body of the given entry that lies in the given chunk
+     * @param world    the world to generate in
+     * @param chunkX   the x coordinate of the chunk
+     * @param chunkZ   the z coordinate of the chunk
+     * @param entry    the entry to generate
+     * @param recorder the {@link OreIndex.Recorder} to record the placed blocks to; {@code null} if they are not recorded
+     * @return the number of placed blocks
+     */
+    static int place(IWorld world, int chunkX, int chunkZ, OreEntry entry, @Nullable OreIndex.Recorder recorder) {
+        int regionShift = REGION_SHIFT - 4;
+        Region region = CACHE.getUnchecked(new Key(world.getSeed(), entry.ore, chunkX >> regionShift, chunkZ >> regionShift));
+        if (region.empty) return 0;
+        int cellX = (chunkX & ((1 << regionShift) - 1)) << (4 - CELL_SHIFT);
+        int cellZ = (chunkZ & ((1 << regionShift) - 1)) << (4 - CELL_SHIFT);
+        if (!region.any(cellX, cellZ)) return 0;
+        int density = MathHelper.clamp(entry.count, 1, 100);
+        Predicate<BlockState> target = entry.filler.getTargetBlockPredicate();
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        int placed = 0;
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                float fx = (float) (x & 3) / 4.0F;
+                float fz = (float) (z & 3) / 4.0F;
+                int cx = cellX + (x >> CELL_SHIFT);
+                int cz = cellZ + (z >> CELL_SHIFT);
+                float strength = lerp(region.strength, cx, cz, fx, fz);
+                if (strength <= 0.0F) continue;
+                float center = entry.minHeight + lerp(region.center, cx, cz, fx, fz) * (entry.maxHeight - entry.minHeight);
+                float half = strength * entry.config.size / 2.0F;
+                int minY = Math.max(MathHelper.ceil(center - half), 0);
+                int maxY = Math.min(MathHelper.floor(center + half), HEIGHT - 1);
+                int blockX = (chunkX << 4) + x;
+                int blockZ = (chunkZ << 4) + z;
+                for (int y = minY; y <= maxY; y++) {
+                    if (Math.floorMod(hash(region.salt, blockX, y, blockZ), 100) >= density) continue;
+                    pos.setPos(blockX, y, blockZ);
+                    if (target.test(world.getBlockState(pos))) {
+                        world.setBlockState(pos, entry.state, 2);
+                        if (recorder != null) recorder.record(pos);
+                        placed++;
+                    }
+                }
+            }
+        }
+        return placed;
+    }
+
+    private static float lerp(float[] values, int cx, int cz, float fx, float fz) {
+        int index = cx * SIZE + cz;
+        return MathHelper.lerp(fx,
+                MathHelper.lerp(fz, values[index], values[index + 1]),
+                MathHelper.lerp(fz, values[index + SIZE], values[index + SIZE + 1]));
+    }
+
+    private static int hash(long salt, int x, int y, int z) {
+        long hash = salt ^ (x * 0x9E3779B97F4A7C15L) ^ (y * 0xC2B2AE3D27D4EB4FL) ^ (z * 0x165667B19E3779F9L);
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return (int) (hash ^ (hash >>> 33));
+    }
+
+    private static Region compute(Key key) {
+        long salt = key.seed ^ String.valueOf(key.ore.getRegistryName()).hashCode() * 0x5DEECE66DL;
+        SharedSeedRandom random = new SharedSeedRandom(salt);
+        SimplexNoiseGenerator body = new SimplexNoiseGenerator(random);
+        SimplexNoiseGenerator height = new SimplexNoiseGenerator(random);
+        float[] strength = new float[SIZE * SIZE];
+        float[] center = new float[SIZE * SIZE];
+        boolean empty = true;
+        int baseX = key.regionX << REGION_SHIFT;
+        int baseZ = key.regionZ << REGION_SHIFT;
+        for (int x = 0; x < SIZE; x++) {
+            for (int z = 0; z < SIZE; z++) {
+                double blockX = (baseX + (x << CELL_SHIFT)) * SCALE;
+                double blockZ = (baseZ + (z << CELL_SHIFT)) * SCALE;
+                float value = ((float) body.getValue(blockX, blockZ) - THRESHOLD) / (1.0F - THRESHOLD);
+                strength[x * SIZE + z] = value;
+                center[x * SIZE + z] = MathHelper.clamp(((float) height.getValue(blockX * 0.5D, blockZ * 0.5D) + 1.0F) / 2.0F, 0.0F, 1.0F);
+                empty &= value <= 0.0F;
+            }
+        }
+        return new Region(salt, strength, center, empty);
+    }
+
+    /**
+     * The sampled field of one {@link Ore} in one region
+     */
+    private static final class Region {
+        private final long salt;
+        private final float[] strength;
+        private final float[] center;
+        private final boolean empty;
+
+        private Region(long salt, float[] strength, float[] center, boolean empty) {
+            this.salt = salt;
+            this.strength = strength;
+            this.center = center;
+            this.empty = empty;
+        }
+
+        /**
+         * Checks whether any sample of the chunk starting at the given cell is inside a body
+         */
+        private boolean any(int cellX, int cellZ) {
+            int cells = 1 << (4 - CELL_SHIFT);
+            for (int x = cellX; x <= cellX + cells; x++) {
+                for (int z = cellZ; z <= cellZ + cells; z++) {
+                    if (strength[x * SIZE + z] > 0.0F) return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Key {
+        private final long seed;
+        private final Ore ore;
+        private final int regionX;
+        private final int regionZ;
+
+        private Key(long seed, Ore ore, int regionX, int regionZ) {
+            this.seed = seed;
+            this.ore = ore;
+            this.regionX = regionX;
+            this.regionZ = regionZ;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) return true;
+            if (!(other instanceof Key)) return false;
+            Key that = (Key) other;
+            return seed == that.seed &&
+                    ore == that.ore &&
+                    regionX == that.regionX &&
+                    regionZ == that.regionZ;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(seed, ore, regionX, regionZ);
+        }
+    }
+}
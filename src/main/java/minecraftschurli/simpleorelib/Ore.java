@@ -1,8 +1,18 @@
 package minecraftschurli.simpleorelib;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hasher;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
+import net.minecraft.util.registry.Registry;
 import net.minecraft.world.biome.Biome;
+import net.minecraft.world.gen.feature.OreFeatureConfig;
+import net.minecraftforge.registries.ForgeRegistries;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static minecraftschurli.simpleorelib.SimpleOreLib.ORES;
 
@@ -12,25 +22,28 @@ import static minecraftschurli.simpleorelib.SimpleOreLib.ORES;
  */
 public class Ore extends Block {
 
-    private final BiomeFilter biomeFilter;
-    private final int veinSize;
-    private final int chance;
-    private final int minHeight;
-    private final int maxHeight;
+    private final OreSettings defaults;
+    private volatile OreSettings settings;
+    private final List<Variant> variants;
+    /**
+     * The index of the first {@link BiomeFilter} variant matching each {@link Biome}, indexed by registry id
+     */
+    @Nullable
+    private volatile short[] biomeVariants;
 
     /**
      * Creates a new ore block with the given {@link Block.Properties} and {@link OreSpawnProperties}
      * @param properties    the properties of this {@link Block}
      * @param oreProperties the spawning properties for this {@link Ore}
+     * @throws IllegalArgumentException if the vein size or chance is negative or the max height is not above the min height
      */
     public Ore(Properties properties, OreSpawnProperties oreProperties) {
         super(properties);
 
-        this.veinSize = oreProperties.veinSize;
-        this.chance = oreProperties.chance;
-        this.minHeight = oreProperties.minHeight;
-        this.maxHeight = oreProperties.maxHeight;
-        this.biomeFilter = oreProperties.biomeFilter;
+        this.defaults = new OreSettings(oreProperties.veinSize, oreProperties.chance, oreProperties.minHeight, oreProperties.maxHeight,
+                oreProperties.veinType, oreProperties.biomeFilter);
+        this.settings = defaults;
+        this.variants = ImmutableList.copyOf(oreProperties.variants);
 
         ORES.add(this);
     }
@@ -40,7 +53,7 @@ public class Ore extends Block {
      * @return the vein size for this {@link Ore}
      */
     public int getVeinSize() {
-        return veinSize;
+        return settings.veinSize;
     }
 
     /**
@@ -48,7 +61,7 @@ public class Ore extends Block {
      * @return the spawn chance for this {@link Ore}
      */
     public int getChance() {
-        return chance;
+        return settings.chance;
     }
 
     /**
@@ -56,7 +69,7 @@ public class Ore extends Block {
      * @return the minimum height this {@link Ore} should spawn at
      */
     public int getMinHeight() {
-        return minHeight;
+        return settings.minHeight;
     }
 
     /**
@@ -64,7 +77,15 @@ public class Ore extends Block {
      * @return the maximum height this {@link Ore} should spawn at
      */
     public int getMaxHeight() {
-        return maxHeight;
+        return settings.maxHeight;
+    }
+
+    /**
+     * Gets the {@link VeinType} for this {@link Ore}
+     * @return the {@link VeinType} for this {@link Ore}
+     */
+    public VeinType getVeinType() {
+        return settings.veinType;
     }
 
     /**
@@ -72,7 +93,7 @@ public class Ore extends Block {
      * @return {@code true} if this {@link Ore} has a {@link BiomeFilter}
      */
     public boolean hasBiomeFilter() {
-        return this.biomeFilter != BiomeFilter.ALL;
+        return settings.biomeFilter != BiomeFilter.ALL;
     }
 
     /**
@@ -80,11 +101,35 @@ public class Ore extends Block {
      * @return the {@link BiomeFilter} for this {@link Ore}
      */
     public BiomeFilter getBiomeFilter() {
-        return biomeFilter;
+        return settings.biomeFilter;
+    }
+
+    /**
+     * Gets the settings this {@link Ore} was constructed with
+     */
+    OreSettings getDefaultSettings() {
+        return defaults;
+    }
+
+    /**
+     * Gets the current settings of this {@link Ore}, including an override from the ore config
+     */
+    OreSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Replaces the current settings of this {@link Ore}.<br>
+     * Features that are already generating keep the settings they were created with until they are replaced.
+     * @param settings the new settings
+     */
+    void setSettings(OreSettings settings) {
+        this.settings = settings;
     }
 
     /**
-     * Gets the {@link BlockState} that should spawn in the given biome
+     * Gets the {@link BlockState} that should spawn in the given biome.<br>
+     * This is called from several threads at once while the ore features are planned, so overrides must not have side effects.
      * @param biome the biome for which to get the {@link BlockState} for
      * @return the {@link BlockState} to generate in the given {@link Biome}; defaults to {@link Block#getDefaultState()}
      */
@@ -92,6 +137,101 @@ public class Ore extends Block {
         return getDefaultState();
     }
 
+    /**
+     * Resolves the {@link BlockState} that should spawn in the given biome with the given filler.<br>
+     * The first matching variant added with {@link OreSpawnProperties#addVariant} wins;
+     * if none matches this falls back to {@link Ore#getGenerationState(Biome)}.
+     * The {@link BiomeFilter} variants are resolved once into a per {@link Biome} table.
+     * @param biome  the biome for which to get the {@link BlockState} for
+     * @param filler the filler of the given {@link Biome}
+     * @return the {@link BlockState} to generate in the given {@link Biome}
+     */
+    BlockState resolveGenerationState(Biome biome, OreFeatureConfig.FillerBlockType filler) {
+        if (variants.isEmpty()) return getGenerationState(biome);
+        short[] table = biomeVariants;
+        if (table == null) {
+            table = bakeVariants();
+            biomeVariants = table;
+        }
+        int id = Registry.BIOME.getId(biome);
+        boolean baked = id >= 0 && id < table.length;
+        int end = baked ? table[id] : variants.size();
+        for (int i = 0; i < end; i++) {
+            Variant variant = variants.get(i);
+            if (variant.filler != null) {
+                if (variant.filler == filler) return variant.state;
+            } else if (!baked && variant.filter != null && variant.filter.test(biome)) {
+                return variant.state;
+            }
+        }
+        if (end < variants.size()) return variants.get(end).state;
+        return getGenerationState(biome);
+    }
+
+    /**
+     * Adds the variants of this {@link Ore} and the variant each registered {@link Biome} resolves to to the given {@link Hasher}
+     * @param hasher the {@link Hasher} to add the variants to
+     */
+    void hashVariants(Hasher hasher) {
+        hasher.putInt(variants.size());
+        if (variants.isEmpty()) return;
+        for (Variant variant : variants) {
+            hasher.putUnencodedChars(variant.filler != null ? variant.filler.name() : "")
+                    .putInt(Block.getStateId(variant.state));
+        }
+        short[] table = biomeVariants;
+        if (table == null) {
+            table = bakeVariants();
+            biomeVariants = table;
+        }
+        hasher.putInt(table.length);
+        for (short variant : table) {
+            hasher.putShort(variant);
+        }
+    }
+
+    private short[] bakeVariants() {
+        BiomeFilter[] filters = new BiomeFilter[variants.size()];
+        for (int i = 0; i < filters.length; i++) {
+            BiomeFilter filter = variants.get(i).filter;
+            if (filter != null) filters[i] = filter.compile();
+        }
+        short[] table = new short[0];
+        for (Biome biome : ForgeRegistries.BIOMES) {
+            int id = Registry.BIOME.getId(biome);
+            if (id < 0) continue;
+            if (id >= table.length) {
+                int from = table.length;
+                table = Arrays.copyOf(table, id + 1);
+                Arrays.fill(table, from, table.length, (short) variants.size());
+            }
+            for (int i = 0; i < filters.length; i++) {
+                if (filters[i] != null && filters[i].test(biome)) {
+                    table[id] = (short) i;
+                    break;
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * A generation state that replaces {@link Ore#getGenerationState(Biome)} where its {@link BiomeFilter} or filler matches
+     */
+    private static final class Variant {
+        @Nullable
+        private final BiomeFilter filter;
+        @Nullable
+        private final OreFeatureConfig.FillerBlockType filler;
+        private final BlockState state;
+
+        private Variant(@Nullable BiomeFilter filter, @Nullable OreFeatureConfig.FillerBlockType filler, BlockState state) {
+            this.filter = filter;
+            this.filler = filler;
+            this.state = state;
+        }
+    }
+
     /**
      * A class that holds information for spawning the ores
      */
@@ -101,6 +241,8 @@ public class Ore extends Block {
         private final int chance;
         private final int minHeight;
         private final int maxHeight;
+        private VeinType veinType;
+        private final List<Variant> variants = new ArrayList<>();
 
         private OreSpawnProperties(int veinSize, int chance, int minHeight, int maxHeight) {
             this.veinSize = veinSize;
@@ -108,6 +250,7 @@ public class Ore extends Block {
             this.minHeight = minHeight;
             this.maxHeight = maxHeight;
             this.biomeFilter = BiomeFilter.ALL;
+            this.veinType = VeinType.VANILLA;
         }
 
         /**
@@ -141,6 +284,38 @@ public class Ore extends Block {
             }
             return this;
         }
+
+        /**
+         * Adds a variant that generates the given {@link BlockState} in every {@link Biome} the given {@link BiomeFilter} matches
+         * @param filter the {@link BiomeFilter} the variant should generate in
+         * @param state  the {@link BlockState} to generate
+         * @return this {@link OreSpawnProperties} instance
+         */
+        public OreSpawnProperties addVariant(BiomeFilter filter, BlockState state) {
+            this.variants.add(new Variant(filter, null, state));
+            return this;
+        }
+
+        /**
+         * Adds a variant that generates the given {@link BlockState} in every {@link Biome} with the given filler
+         * @param filler the {@link OreFeatureConfig.FillerBlockType filler} the variant should generate in
+         * @param state  the {@link BlockState} to generate
+         * @return this {@link OreSpawnProperties} instance
+         */
+        public OreSpawnProperties addVariant(OreFeatureConfig.FillerBlockType filler, BlockState state) {
+            this.variants.add(new Variant(null, filler, state));
+            return this;
+        }
+
+        /**
+         * Sets the {@link VeinType} the ores that this {@link OreSpawnProperties} instance is passed to should generate with
+         * @param veinType the {@link VeinType} to use; defaults to {@link VeinType#VANILLA}
+         * @return this {@link OreSpawnProperties} instance
+         */
+        public OreSpawnProperties setVeinType(VeinType veinType) {
+            this.veinType = veinType;
+            return this;
+        }
     }
 
 }
@@ -0,0 +1,286 @@
+package minecraftschurli.simpleorelib;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.gen.feature.OreFeatureConfig;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Estimates how many blocks every {@link Ore} generates per chunk, per y level and per {@link Biome} from its spawn properties alone.<br>
+ * The expected size of a vein is measured by {@link OreVeinGenerator#trace tracing} veins with {@link OreVeinGenerator} without a world,
+ * with the origins spread over the height range like {@link BatchedOreFeature} does.
+ * As no terrain exists, every position is assumed to be the host rock of the {@link Biome} and the surface check is ignored,
+ * so the numbers are upper bounds that are exact for veins fully inside the filler.
+ * The host rock is netherrack in nether {@link Biome Biomes}, end stone in end {@link Biome Biomes} and stone everywhere else,
+ * and an {@link Ore} only counts in a {@link Biome} if the filler from {@link SimpleOreLib#fillerForBiome(Biome)} accepts it.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+final class OreDensityEstimator {
+    private static final int SAMPLES = Integer.getInteger("simpleorelib.density.samples", 4096);
+    private static final int HEIGHT = 256;
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private OreDensityEstimator() {}
+
+    /**
+     * Estimates the density of the given {@link Ore Ores}
+     * @param biomes the {@link Biome Biomes} to estimate the density in
+     * @param ores   the {@link Ore Ores} to estimate
+     * @param seed   the seed of the sampled veins
+     * @return the estimate
+     */
+    @Nonnull
+    static Report estimate(@Nonnull List<Biome> biomes, @Nonnull List<Ore> ores, long seed) {
+        List<OreEstimate> estimates = new ArrayList<>(ores.size());
+        Random random = new Random(seed);
+        for (Ore ore : ores) {
+            estimates.add(estimate(ore, random));
+        }
+        List<BiomeEstimate> biomeEstimates = new ArrayList<>(biomes.size());
+        for (Biome biome : biomes) {
+            OreFeatureConfig.FillerBlockType filler = SimpleOreLib.fillerForBiome(biome);
+            boolean accepted = filler.getTargetBlockPredicate().test(hostRock(biome));
+            List<OreEstimate> matching = new ArrayList<>();
+            for (OreEstimate estimate : estimates) {
+                if (!estimate.ore.hasBiomeFilter() || estimate.filter.test(biome)) matching.add(estimate);
+            }
+            biomeEstimates.add(new BiomeEstimate(biome, filler, accepted, matching));
+        }
+        return new Report(estimates, biomeEstimates);
+    }
+
+    private static OreEstimate estimate(Ore ore, Random random) {
+        OreEstimate estimate = new OreEstimate(ore);
+        int minHeight = ore.getMinHeight();
+        int maxHeight = ore.getMaxHeight();
+        if (minHeight < 0 || maxHeight > HEIGHT) {
+            estimate.warnings.add("the height range " + minHeight + ".." + maxHeight + " leaves the world, veins outside of it are lost");
+        }
+        if (ore.getChance() <= 0) {
+            estimate.warnings.add("chance " + ore.getChance() + " never places a vein");
+        }
+        if (ore.getVeinSize() < 3) {
+            estimate.warnings.add("vein size " + ore.getVeinSize() + " rarely places any block");
+        }
+        if (ore.getVeinType() == VeinType.LARGE) {
+            estimate.warnings.add("large veins are not estimated");
+            return estimate;
+        }
+        BlockPos.Mutable origin = new BlockPos.Mutable();
+        double[] blocksPerY = estimate.blocksPerY;
+        OreVeinGenerator.Placer placer = pos -> {
+            if (pos.getY() < 0 || pos.getY() >= HEIGHT) return false;
+            blocksPerY[pos.getY()]++;
+            return true;
+        };
+        long blocks = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            origin.setPos(0, random.nextInt(maxHeight - minHeight) + minHeight, 0);
+            blocks += OreVeinGenerator.trace(random, origin, ore.getVeinSize(), placer);
+        }
+        estimate.blocksPerVein = (double) blocks / SAMPLES;
+        for (int y = 0; y < HEIGHT; y++) {
+            estimate.blocksPerY[y] = estimate.blocksPerY[y] / SAMPLES * Math.max(ore.getChance(), 0);
+        }
+        return estimate;
+    }
+
+    /**
+     * Gets the block the terrain of the given {@link Biome} is assumed to be made of
+     */
+    private static BlockState hostRock(Biome biome) {
+        switch (biome.getCategory()) {
+            case NETHER:
+                return Blocks.NETHERRACK.getDefaultState();
+            case THEEND:
+                return Blocks.END_STONE.getDefaultState();
+            default:
+                return Blocks.STONE.getDefaultState();
+        }
+    }
+
+    /**
+     * The estimate of one {@link Ore}
+     */
+    static final class OreEstimate {
+        private final Ore ore;
+        private final BiomeFilter filter;
+        private final double[] blocksPerY = new double[HEIGHT];
+        private final List<String> warnings = new ArrayList<>();
+        private double blocksPerVein;
+
+        private OreEstimate(Ore ore) {
+            this.ore = ore;
+            this.filter = ore.getBiomeFilter().compile();
+        }
+
+        private double blocksPerChunk() {
+            return blocksPerVein * Math.max(ore.getChance(), 0);
+        }
+
+        private String name() {
+            return String.valueOf(ore.getRegistryName());
+        }
+    }
+
+    /**
+     * The {@link Ore Ores} of one {@link Biome}
+     */
+    static final class BiomeEstimate {
+        private final Biome biome;
+        private final OreFeatureConfig.FillerBlockType filler;
+        private final boolean accepted;
+        private final List<OreEstimate> ores;
+
+        private BiomeEstimate(Biome biome, OreFeatureConfig.FillerBlockType filler, boolean accepted, List<OreEstimate> ores) {
+            this.biome = biome;
+            this.filler = filler;
+            this.accepted = accepted;
+            this.ores = ores;
+        }
+
+        /**
+         * Gets the blocks the given {@link Ore} places per chunk of this {@link Biome}; none if the filler does not accept the host rock
+         */
+        private double blocksPerChunk(OreEstimate ore) {
+            return accepted ? ore.blocksPerChunk() : 0;
+        }
+
+        private double blocksPerChunk() {
+            double blocks = 0;
+            for (OreEstimate ore : ores) {
+                blocks += blocksPerChunk(ore);
+            }
+            return blocks;
+        }
+    }
+
+    /**
+     * The estimate of all {@link Ore Ores} and {@link Biome Biomes}
+     */
+    static final class Report {
+        private final List<OreEstimate> ores;
+        private final List<BiomeEstimate> biomes;
+
+        private Report(List<OreEstimate> ores, List<BiomeEstimate> biomes) {
+            this.ores = ores;
+            this.biomes = biomes;
+        }
+
+        /**
+         * Gets the warnings of all {@link Ore Ores}
+         * @return one line per warning
+         */
+        @Nonnull
+        List<String> getWarnings() {
+            List<String> lines = new ArrayList<>();
+            for (OreEstimate ore : ores) {
+                for (String warning : ore.warnings) {
+                    lines.add(ore.name() + ": " + warning);
+                }
+            }
+            return lines;
+        }
+
+        /**
+         * Writes the report as three CSV files next to each other, one per ore, one per ore and y level and one per biome and ore
+         * @param prefix the path and name prefix of the files
+         * @throws IOException if the files cannot be written
+         */
+        void writeCsv(@Nonnull Path prefix) throws IOException {
+            try (Writer writer = writer(prefix, "-ores.csv")) {
+                writer.write("ore,vein_size,veins_per_chunk,min_y,max_y,blocks_per_vein,blocks_per_chunk,warnings\n");
+                for (OreEstimate ore : ores) {
+                    writer.write(String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%.3f,%.3f,\"%s\"%n", ore.name(), ore.ore.getVeinSize(), ore.ore.getChance(),
+                            ore.ore.getMinHeight(), ore.ore.getMaxHeight(), ore.blocksPerVein, ore.blocksPerChunk(), String.join("; ", ore.warnings)));
+                }
+            }
+            try (Writer writer = writer(prefix, "-levels.csv")) {
+                writer.write("ore,y,blocks_per_chunk\n");
+                for (OreEstimate ore : ores) {
+                    for (int y = 0; y < HEIGHT; y++) {
+                        if (ore.blocksPerY[y] > 0) writer.write(String.format(Locale.ROOT, "%s,%d,%.4f%n", ore.name(), y, ore.blocksPerY[y]));
+                    }
+                }
+            }
+            try (Writer writer = writer(prefix, "-biomes.csv")) {
+                writer.write("biome,filler,ore,blocks_per_chunk\n");
+                for (BiomeEstimate biome : biomes) {
+                    for (OreEstimate ore : biome.ores) {
+                        writer.write(String.format(Locale.ROOT, "%s,%s,%s,%.3f%n", biome.biome.getRegistryName(), biome.filler.name(), ore.name(), biome.blocksPerChunk(ore)));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Writes the report as one JSON file
+         * @param file the file to write to
+         * @throws IOException if the file cannot be written
+         */
+        void writeJson(@Nonnull Path file) throws IOException {
+            JsonObject root = new JsonObject();
+            root.addProperty("samples", SAMPLES);
+            JsonArray oreArray = new JsonArray();
+            for (OreEstimate ore : ores) {
+                JsonObject object = new JsonObject();
+                object.addProperty("ore", ore.name());
+                object.addProperty("veinSize", ore.ore.getVeinSize());
+                object.addProperty("veinsPerChunk", ore.ore.getChance());
+                object.addProperty("minY", ore.ore.getMinHeight());
+                object.addProperty("maxY", ore.ore.getMaxHeight());
+                object.addProperty("blocksPerVein", ore.blocksPerVein);
+                object.addProperty("blocksPerChunk", ore.blocksPerChunk());
+                JsonObject levels = new JsonObject();
+                for (int y = 0; y < HEIGHT; y++) {
+                    if (ore.blocksPerY[y] > 0) levels.addProperty(Integer.toString(y), ore.blocksPerY[y]);
+                }
+                object.add("blocksPerChunkByY", levels);
+                JsonArray warnings = new JsonArray();
+                ore.warnings.forEach(warnings::add);
+                object.add("warnings", warnings);
+                oreArray.add(object);
+            }
+            root.add("ores", oreArray);
+            JsonArray biomeArray = new JsonArray();
+            for (BiomeEstimate biome : biomes) {
+                JsonObject object = new JsonObject();
+                object.addProperty("biome", String.valueOf(biome.biome.getRegistryName()));
+                object.addProperty("filler", biome.filler.name());
+                object.addProperty("blocksPerChunk", biome.blocksPerChunk());
+                JsonObject biomeOres = new JsonObject();
+                for (OreEstimate ore : biome.ores) {
+                    biomeOres.addProperty(ore.name(), biome.blocksPerChunk(ore));
+                }
+                object.add("ores", biomeOres);
+                biomeArray.add(object);
+            }
+            root.add("biomes", biomeArray);
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                GSON.toJson(root, writer);
+            }
+        }
+
+        private static Writer writer(Path prefix, String suffix) throws IOException {
+            Path file = prefix.resolveSibling(prefix.getFileName() + suffix);
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            return Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        }
+    }
+}
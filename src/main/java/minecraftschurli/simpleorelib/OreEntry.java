@@ -0,0 +1,87 @@
+package minecraftschurli.simpleorelib;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.gen.feature.OreFeatureConfig;
+
+import javax.annotation.Nonnull;
+import java.util.Objects;
+
+/**
+ * The resolved generation settings of one {@link Ore} in one or more {@link net.minecraft.world.biome.Biome Biomes}
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+final class OreEntry {
+    final Ore ore;
+    final OreFeatureConfig.FillerBlockType filler;
+    final BlockState state;
+    final OreFeatureConfig config;
+    /**
+     * The settings this entry was created with, which may differ from the current settings of its {@link Ore}
+     */
+    final OreSettings settings;
+    final VeinType veinType;
+    final OreMetrics.Counters metrics;
+    final int count;
+    final int minHeight;
+    final int maxHeight;
+    /**
+     * How far a vein can reach above or below its origin
+     */
+    final int reach;
+    /**
+     * How far a vein can reach along the x or z axis from its origin
+     */
+    final int horizontalReach;
+
+    OreEntry(@Nonnull Ore ore, @Nonnull OreFeatureConfig.FillerBlockType filler, @Nonnull BlockState state, @Nonnull OreSettings settings) {
+        this.ore = ore;
+        this.filler = filler;
+        this.state = state;
+        this.config = new OreFeatureConfig(filler, state, settings.veinSize);
+        this.settings = settings;
+        this.veinType = settings.veinType;
+        this.metrics = OreMetrics.get(ore);
+        this.count = settings.chance;
+        this.minHeight = settings.minHeight;
+        this.maxHeight = settings.maxHeight;
+        int i = MathHelper.ceil(((float) settings.veinSize / 16.0F * 2.0F + 1.0F) / 2.0F);
+        if (veinType == VeinType.LARGE) {
+            this.reach = MathHelper.ceil((float) settings.veinSize / 2.0F) + 1;
+            this.horizontalReach = 0;
+        } else {
+            this.reach = 2 + i;
+            this.horizontalReach = MathHelper.ceil((float) settings.veinSize / 8.0F) + i;
+        }
+    }
+
+    /**
+     * Gets the lowest y level a vein of this entry can place blocks at
+     * @return the lowest y level a vein of this entry can place blocks at
+     */
+    int getLowestY() {
+        return minHeight - reach;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof OreEntry)) return false;
+        OreEntry that = (OreEntry) other;
+        return ore == that.ore &&
+                filler == that.filler &&
+                state == that.state &&
+                veinType == that.veinType &&
+                config.size == that.config.size &&
+                count == that.count &&
+                minHeight == that.minHeight &&
+                maxHeight == that.maxHeight;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(ore, filler, state, veinType, config.size, count, minHeight, maxHeight);
+    }
+}
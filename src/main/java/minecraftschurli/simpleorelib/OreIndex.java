@@ -0,0 +1,303 @@
+package minecraftschurli.simpleorelib;
+
+import net.minecraft.block.Block;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.ListNBT;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.IChunk;
+import net.minecraftforge.common.util.Constants;
+import net.minecraftforge.registries.ForgeRegistries;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Per chunk section counts of the blocks every {@link Ore} placed, recorded while the ores are generated.<br>
+ * The counts are saved with the chunk and kept in memory while it is loaded,
+ * so {@link OreIndex#locateNearest} answers queries without looking at any block.
+ * The index is enabled with {@code -Dsimpleorelib.oreIndex=true}.
+ * Counting needs the blocks every vein placed, so while it is enabled {@link VeinType#VANILLA} veins are generated by {@link OreVeinGenerator} as well.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+final class OreIndex {
+    /**
+     * Whether the placed blocks are recorded
+     */
+    static final boolean ENABLED = Boolean.getBoolean("simpleorelib.oreIndex");
+    private static final String KEY = SimpleOreLib.MODID + ":summary";
+    private static final int SECTIONS = 16;
+    private static final ThreadLocal<Recorder> RECORDER = ThreadLocal.withInitial(Recorder::new);
+
+    private static final Map<IWorld, Map<Long, Summary>> SUMMARIES = new ConcurrentHashMap<>();
+
+    private OreIndex() {}
+
+    /**
+     * Gets the {@link Recorder} of the current thread, set up for the decoration of the given chunk
+     * @param chunkX  the x coordinate of the decorated chunk
+     * @param chunkZ  the z coordinate of the decorated chunk
+     * @param entries the entries that are generated
+     * @return the {@link Recorder}
+     */
+    static Recorder recorder(int chunkX, int chunkZ, OreEntry[] entries) {
+        Recorder recorder = RECORDER.get();
+        recorder.begin(chunkX, chunkZ, entries);
+        return recorder;
+    }
+
+    /**
+     * Finds the loaded chunk section closest to the given position in which the given {@link Ore} placed blocks
+     * @param world  the world to search in
+     * @param pos    the position to search from
+     * @param ore    the {@link Ore} to search for
+     * @param radius the maximum horizontal distance in blocks
+     * @return the center of the closest section; {@code null} if there is none within the radius
+     */
+    @Nullable
+    static BlockPos locateNearest(@Nonnull IWorld world, @Nonnull BlockPos pos, @Nonnull Ore ore, int radius) {
+        Map<Long, Summary> summaries = SUMMARIES.get(world.getWorld());
+        if (summaries == null) return null;
+        int centerX = pos.getX() >> 4;
+        int centerZ = pos.getZ() >> 4;
+        int chunkRadius = (radius + 15) >> 4;
+        BlockPos.Mutable section = new BlockPos.Mutable();
+        BlockPos best = null;
+        double bestDistance = (double) radius * radius;
+        for (int ring = 0; ring <= chunkRadius; ring++) {
+            double ringDistance = Math.max(0, (ring - 1) * 16);
+            if (best != null && ringDistance * ringDistance > bestDistance) break;
+            for (int x = -ring; x <= ring; x++) {
+                for (int z = -ring; z <= ring; z++) {
+                    if (Math.abs(x) != ring && Math.abs(z) != ring) continue;
+                    Summary summary = summaries.get(ChunkPos.asLong(centerX + x, centerZ + z));
+                    if (summary == null) continue;
+                    AtomicIntegerArray counts = summary.get(ore);
+                    if (counts == null) continue;
+                    for (int y = 0; y < SECTIONS; y++) {
+                        if (counts.get(y) == 0) continue;
+                        section.setPos(((centerX + x) << 4) + 8, (y << 4) + 8, ((centerZ + z) << 4) + 8);
+                        double dx = section.getX() - pos.getX();
+                        double dz = section.getZ() - pos.getZ();
+                        if (dx * dx + dz * dz > (double) radius * radius) continue;
+                        double distance = section.distanceSq(pos);
+                        if (best == null || distance < bestDistance) {
+                            best = section.toImmutable();
+                            bestDistance = distance;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Reads the counts of a loaded chunk
+     * @param world the world of the chunk; {@code null} if it is unknown
+     * @param chunk the loaded chunk
+     * @param data  the saved data of the chunk
+     */
+    static void load(@Nullable IWorld world, @Nonnull IChunk chunk, @Nonnull CompoundNBT data) {
+        if (!ENABLED || world == null || !data.contains(KEY, Constants.NBT.TAG_LIST)) return;
+        ListNBT list = data.getList(KEY, Constants.NBT.TAG_COMPOUND);
+        Summary summary = new Summary();
+        for (int i = 0; i < list.size(); i++) {
+            CompoundNBT entry = list.getCompound(i);
+            Block block = ForgeRegistries.BLOCKS.getValue(new ResourceLocation(entry.getString("ore")));
+            int[] counts = entry.getIntArray("counts");
+            if (block instanceof Ore && counts.length == SECTIONS) summary.add((Ore) block, counts);
+        }
+        summaries(world).put(chunk.getPos().asLong(), summary);
+    }
+
+    /**
+     * Writes the counts of a saved chunk.<br>
+     * Chunks that are not full do not get an unload event, and they are only saved when they are unloaded or the world is flushed,
+     * so their counts are dropped from memory once they are written and read again when the chunk is loaded.
+     * @param world the world of the chunk; {@code null} if it is unknown
+     * @param chunk the saved chunk
+     * @param data  the data the chunk is saved to
+     */
+    static void save(@Nullable IWorld world, @Nonnull IChunk chunk, @Nonnull CompoundNBT data) {
+        if (!ENABLED || world == null) return;
+        Map<Long, Summary> summaries = SUMMARIES.get(world.getWorld());
+        if (summaries == null) return;
+        long pos = chunk.getPos().asLong();
+        Summary summary = summaries.get(pos);
+        if (summary == null) return;
+        data.put(KEY, summary.write());
+        if (chunk.getStatus().getType() == ChunkStatus.Type.PROTOCHUNK) summaries.remove(pos, summary);
+    }
+
+    /**
+     * Drops the counts of an unloaded chunk
+     * @param world the world of the chunk
+     * @param chunk the unloaded chunk
+     */
+    static void unload(@Nullable IWorld world, @Nonnull IChunk chunk) {
+        if (world == null) return;
+        Map<Long, Summary> summaries = SUMMARIES.get(world.getWorld());
+        if (summaries != null) summaries.remove(chunk.getPos().asLong());
+    }
+
+    /**
+     * Drops the counts of an unloaded world
+     * @param world the unloaded world
+     */
+    static void unload(@Nonnull IWorld world) {
+        SUMMARIES.remove(world.getWorld());
+    }
+
+    private static Map<Long, Summary> summaries(IWorld world) {
+        return SUMMARIES.computeIfAbsent(world.getWorld(), key -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Collects the placed blocks of one chunk decoration in a reused buffer and merges them into the index at once
+     */
+    static final class Recorder {
+        private int[] counts = new int[0];
+        private OreEntry[] entries;
+        private int chunkX;
+        private int chunkZ;
+        private int entry;
+
+        private Recorder() {}
+
+        private void begin(int chunkX, int chunkZ, OreEntry[] entries) {
+            int length = 9 * SECTIONS * entries.length;
+            if (counts.length < length) {
+                counts = new int[length];
+            } else {
+                Arrays.fill(counts, 0, length, 0);
+            }
+            this.entries = entries;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        /**
+         * Selects the entry the following blocks belong to
+         * @param entry the index of the entry in the generated config
+         */
+        void select(int entry) {
+            this.entry = entry;
+        }
+
+        /**
+         * Records one placed block
+         * @param pos the position of the block
+         */
+        void record(BlockPos pos) {
+            int x = (pos.getX() >> 4) - chunkX + 1;
+            int z = (pos.getZ() >> 4) - chunkZ + 1;
+            int y = pos.getY() >> 4;
+            if (x < 0 || x > 2 || z < 0 || z > 2 || y < 0 || y >= SECTIONS) return;
+            counts[((x * 3 + z) * SECTIONS + y) * entries.length + entry]++;
+        }
+
+        /**
+         * Merges the recorded blocks into the index of the given world
+         * @param world the decorated world
+         */
+        void flush(IWorld world) {
+            if (world.getWorld() == null) return;
+            Map<Long, Summary> summaries = null;
+            int stride = SECTIONS * entries.length;
+            for (int chunk = 0; chunk < 9; chunk++) {
+                int base = chunk * stride;
+                boolean any = false;
+                for (int i = base; i < base + stride && !any; i++) {
+                    any = counts[i] != 0;
+                }
+                if (!any) continue;
+                if (summaries == null) summaries = summaries(world);
+                long pos = ChunkPos.asLong(chunkX + chunk / 3 - 1, chunkZ + chunk % 3 - 1);
+                summaries.computeIfAbsent(pos, key -> new Summary()).merge(entries, counts, base);
+            }
+        }
+    }
+
+    /**
+     * The counts of one chunk.<br>
+     * Neighbouring chunks are decorated in parallel and merge into each others counts,
+     * so the counts are atomic and a new {@link Ore} is added by swapping the column array instead of taking a lock.
+     */
+    private static final class Summary {
+        private final AtomicReference<Column[]> columns = new AtomicReference<>(new Column[0]);
+
+        @Nullable
+        private AtomicIntegerArray get(Ore ore) {
+            for (Column column : columns.get()) {
+                if (column.ore == ore) return column.counts;
+            }
+            return null;
+        }
+
+        private void add(Ore ore, int[] sections) {
+            AtomicIntegerArray current = counts(ore);
+            for (int y = 0; y < SECTIONS; y++) {
+                current.addAndGet(y, sections[y]);
+            }
+        }
+
+        private void merge(OreEntry[] entries, int[] recorded, int base) {
+            for (int i = 0; i < entries.length; i++) {
+                AtomicIntegerArray current = null;
+                for (int y = 0; y < SECTIONS; y++) {
+                    int count = recorded[base + y * entries.length + i];
+                    if (count == 0) continue;
+                    if (current == null) current = counts(entries[i].ore);
+                    current.addAndGet(y, count);
+                }
+            }
+        }
+
+        private AtomicIntegerArray counts(Ore ore) {
+            while (true) {
+                Column[] current = columns.get();
+                for (Column column : current) {
+                    if (column.ore == ore) return column.counts;
+                }
+                Column[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = new Column(ore);
+                if (columns.compareAndSet(current, updated)) return updated[current.length].counts;
+            }
+        }
+
+        private ListNBT write() {
+            ListNBT list = new ListNBT();
+            for (Column column : columns.get()) {
+                int[] counts = new int[SECTIONS];
+                for (int y = 0; y < SECTIONS; y++) {
+                    counts[y] = column.counts.get(y);
+                }
+                CompoundNBT entry = new CompoundNBT();
+                entry.putString("ore", String.valueOf(column.ore.getRegistryName()));
+                entry.putIntArray("counts", counts);
+                list.add(entry);
+            }
+            return list;
+        }
+    }
+
+    private static final class Column {
+        private final Ore ore;
+        private final AtomicIntegerArray counts = new AtomicIntegerArray(SECTIONS);
+
+        private Column(Ore ore) {
+            this.ore = ore;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package minecraftschurli.simpleorelib;
+
+import net.minecraft.util.ResourceLocation;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per {@link Ore} generation counters.<br>
+ * Profiling is enabled by starting the game with {@code -Dsimpleorelib.profile=true}.
+ * As {@link OreMetrics#ENABLED} is a constant, the instrumentation is removed entirely by the JIT when profiling is disabled.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+final class OreMetrics {
+    /**
+     * Whether profiling is enabled
+     */
+    static final boolean ENABLED = Boolean.getBoolean("simpleorelib.profile");
+    /**
+     * The interval in ticks in which the counters are written to the log; 0 disables the log output
+     */
+    static final int LOG_INTERVAL = Integer.getInteger("simpleorelib.profile.interval", 6000);
+
+    private static final Map<Ore, Counters> COUNTERS = new ConcurrentHashMap<>();
+
+    private OreMetrics() {}
+
+    /**
+     * Gets the counters for the given {@link Ore}
+     * @param ore the {@link Ore} to get the counters for
+     * @return the counters for the given {@link Ore}
+     */
+    @Nonnull
+    static Counters get(@Nonnull Ore ore) {
+        return COUNTERS.computeIfAbsent(ore, Counters::new);
+    }
+
+    /**
+     * Resets the counters of all {@link Ore Ores}
+     */
+    static void reset() {
+        COUNTERS.values().forEach(Counters::reset);
+    }
+
+    /**
+     * Formats the counters of all {@link Ore Ores} that have generated anything, most expensive first
+     * @return one line per {@link Ore}
+     */
+    @Nonnull
+    static List<String> report() {
+        List<Counters> counters = new ArrayList<>(COUNTERS.values());
+        counters.removeIf(counter -> counter.veinsAttempted.sum() == 0);
+        counters.sort(Comparator.comparingLong((Counters counter) -> counter.nanos.sum()).reversed());
+        List<String> lines = new ArrayList<>(counters.size());
+        for (Counters counter : counters) {
+            ResourceLocation name = counter.ore.getRegistryName();
+            long blocks = counter.blocksPlaced.sum();
+            lines.add(String.format(Locale.ROOT, "%s: %d veins attempted, %d skipped, %d placed, %s blocks, %.3f ms",
+                    name != null ? name : counter.ore,
+                    counter.veinsAttempted.sum(),
+                    counter.veinsSkipped.sum(),
+                    counter.veinsPlaced.sum(),
+                    counter.ore.getVeinType() == VeinType.VANILLA && !OreIndex.ENABLED ? "-" : Long.toString(blocks),
+                    counter.nanos.sum() / 1_000_000.0));
+        }
+        return lines;
+    }
+
+    /**
+     * The counters of one {@link Ore}
+     */
+    static final class Counters {
+        /**
+         * Passed as the block count for veins that placed blocks without counting them
+         */
+        static final int UNCOUNTED = -1;
+
+        private final Ore ore;
+        private final LongAdder veinsAttempted = new LongAdder();
+        private final LongAdder veinsSkipped = new LongAdder();
+        private final LongAdder veinsPlaced = new LongAdder();
+        private final LongAdder blocksPlaced = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private Counters(Ore ore) {
+            this.ore = ore;
+        }
+
+        /**
+         * Records one vein
+         * @param blocks the number of placed blocks; {@link Counters#UNCOUNTED} if blocks were placed but not counted
+         * @param nanos  the time it took to generate the vein
+         */
+        void record(int blocks, long nanos) {
+            veinsAttempted.increment();
+            if (blocks != 0) veinsPlaced.increment();
+            if (blocks > 0) blocksPlaced.add(blocks);
+            this.nanos.add(nanos);
+        }
+
+        /**
+         * Records one vein that was skipped because it could not reach any block its filler accepts
+         * @param nanos the time it took to decide to skip the vein
+         */
+        void skip(long nanos) {
+            veinsAttempted.increment();
+            veinsSkipped.increment();
+            this.nanos.add(nanos);
+        }
+
+        private void reset() {
+            veinsAttempted.reset();
+            veinsSkipped.reset();
+            veinsPlaced.reset();
+            blocksPlaced.reset();
+            nanos.reset();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package minecraftschurli.simpleorelib;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.fml.loading.FMLPaths;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per {@link Ore} spawn overrides read from {@code config/simpleorelib-ores.json}, so rates can be tuned without rebuilding a mod.<br>
+ * The file maps ore registry names to an override as read by {@link OreSettings#apply(JsonObject)}:
+ * {@code {"mymod:copper_ore": {"chance": 12, "maxHeight": 48, "biomes": {"type": "MOUNTAIN"}}}}.
+ * Overrides are applied before the ore features are set up and again by {@code /simpleorelib reload}.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+final class OreOverrides {
+    /**
+     * The overrides of a missing file
+     */
+    static final OreOverrides NONE = new OreOverrides(ImmutableMap.of(), ImmutableList.of());
+
+    private static volatile OreOverrides current = NONE;
+
+    private final Map<ResourceLocation, JsonObject> overrides;
+    private final List<String> warnings;
+
+    private OreOverrides(Map<ResourceLocation, JsonObject> overrides, List<String> warnings) {
+        this.overrides = overrides;
+        this.warnings = warnings;
+    }
+
+    /**
+     * Gets the path of the override file
+     */
+    static Path file() {
+        return FMLPaths.CONFIGDIR.get().resolve(SimpleOreLib.MODID + "-ores.json");
+    }
+
+    /**
+     * Reads the overrides from the given file and checks every override against the given {@link Ore Ores}
+     * @param file the file to read
+     * @param ores the registered {@link Ore Ores}
+     * @return the read overrides; {@link OreOverrides#NONE} if the file does not exist
+     * @throws IOException        if the file could not be read
+     * @throws JsonParseException if the file or an override is invalid
+     */
+    @Nonnull
+    static OreOverrides read(@Nonnull Path file, @Nonnull List<Ore> ores) throws IOException {
+        JsonElement root;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            root = new JsonParser().parse(reader);
+        } catch (NoSuchFileException e) {
+            return NONE;
+        }
+        if (!root.isJsonObject()) throw new JsonParseException("Expected an object mapping ore names to overrides");
+        Set<ResourceLocation> names = new HashSet<>();
+        for (Ore ore : ores) {
+            names.add(ore.getRegistryName());
+        }
+        ImmutableMap.Builder<ResourceLocation, JsonObject> overrides = ImmutableMap.builder();
+        List<String> warnings = new ArrayList<>();
+        for (Map.Entry<String, JsonElement> entry : root.getAsJsonObject().entrySet()) {
+            ResourceLocation name = ResourceLocation.tryCreate(entry.getKey());
+            if (name == null) throw new JsonParseException("Invalid ore name: " + entry.getKey());
+            if (!entry.getValue().isJsonObject()) throw new JsonParseException("Expected an object as the override of " + name);
+            if (!names.contains(name)) {
+                warnings.add("There is no ore named " + name + ", its override only applies if it is registered later");
+            }
+            overrides.put(name, entry.getValue().getAsJsonObject());
+        }
+        OreOverrides result = new OreOverrides(overrides.build(), ImmutableList.copyOf(warnings));
+        for (Ore ore : ores) {
+            try {
+                result.settingsFor(ore);
+            } catch (JsonParseException e) {
+                throw new JsonParseException("Invalid override of " + ore.getRegistryName() + ": " + e.getMessage(), e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the override file at startup, logging and ignoring it if it is invalid
+     * @param ores the registered {@link Ore Ores}
+     * @return the read overrides
+     */
+    @Nonnull
+    static OreOverrides readOrNone(@Nonnull List<Ore> ores) {
+        Path file = file();
+        try {
+            OreOverrides overrides = read(file, ores);
+            overrides.warnings.forEach(SimpleOreLib.LOGGER::warn);
+            return overrides;
+        } catch (IOException | JsonParseException e) {
+            SimpleOreLib.LOGGER.error("Could not read the ore overrides from {}, using the defaults", file, e);
+            return NONE;
+        }
+    }
+
+    /**
+     * Gets the overrides that are currently applied
+     */
+    static OreOverrides current() {
+        return current;
+    }
+
+    /**
+     * Applies these overrides to the given {@link Ore Ores} and makes them the {@link OreOverrides#current() current} overrides.<br>
+     * {@link Ore Ores} registered after the file was read were not checked, they keep their defaults if their override is invalid.
+     * @param ores the {@link Ore Ores} to apply the overrides to
+     */
+    void apply(@Nonnull List<Ore> ores) {
+        for (Ore ore : ores) {
+            try {
+                ore.setSettings(settingsFor(ore));
+            } catch (JsonParseException e) {
+                SimpleOreLib.LOGGER.error("Invalid override of {}, using the defaults", ore.getRegistryName(), e);
+                ore.setSettings(ore.getDefaultSettings());
+            }
+        }
+        current = this;
+    }
+
+    /**
+     * Resolves the settings of the given {@link Ore} with its override applied
+     * @param ore the {@link Ore} to resolve the settings of
+     * @return the overridden settings; the {@link Ore#getDefaultSettings() default settings} if there is no override
+     * @throws JsonParseException if the override is invalid
+     */
+    @Nonnull
+    OreSettings settingsFor(@Nonnull Ore ore) {
+        JsonObject override = overrides.get(ore.getRegistryName());
+        return override != null ? ore.getDefaultSettings().apply(override) : ore.getDefaultSettings();
+    }
+
+    /**
+     * Resolves the settings of all given {@link Ore Ores}
+     * @param ores the {@link Ore Ores} to resolve the settings of
+     * @return the settings of every given {@link Ore}
+     */
+    @Nonnull
+    Map<Ore, OreSettings> settingsFor(@Nonnull List<Ore> ores) {
+        Map<Ore, OreSettings> settings = new IdentityHashMap<>();
+        for (Ore ore : ores) {
+            settings.put(ore, settingsFor(ore));
+        }
+        return settings;
+    }
+
+    /**
+     * Gets the number of {@link Ore Ores} with an override
+     */
+    int size() {
+        return overrides.size();
+    }
+
+    /**
+     * Gets the problems found while reading that did not prevent the overrides from being used
+     */
+    List<String> getWarnings() {
+        return warnings;
+    }
+}
@@ -0,0 +1,141 @@
+package minecraftschurli.simpleorelib;
+
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.gen.feature.ConfiguredFeature;
+import net.minecraft.world.gen.feature.OreFeatureConfig;
+import net.minecraft.world.gen.placement.ConfiguredPlacement;
+import net.minecraft.world.gen.placement.IPlacementConfig;
+import net.minecraft.world.gen.placement.Placement;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * The resolved {@link BatchedOreFeature} of all {@link Ore Ores} for each {@link Biome} in a list of {@link Biome Biomes}.<br>
+ * Every {@link Biome} gets a feature, even if no {@link Ore} generates in it, see {@link ActivePlan}.<br>
+ * {@link Biome Biomes} with the same {@link OreEntry OreEntries} share one {@link ConfiguredFeature}.<br>
+ * The plan is computed in parallel, as evaluating the {@link BiomeFilter BiomeFilters} and building the configs has no side effects,
+ * and is then applied to the {@link Biome Biomes} serially.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+final class OrePlan {
+    private static final ConfiguredPlacement<?> PLACEMENT = Placement.NOPE.func_227446_a_(IPlacementConfig.NO_PLACEMENT_CONFIG);
+
+    private final List<Biome> biomes;
+    private final List<List<OreEntry>> entries;
+    private final List<ConfiguredFeature<?, ?>> features;
+
+    private OrePlan(List<Biome> biomes, List<List<OreEntry>> entries, List<ConfiguredFeature<?, ?>> features) {
+        this.biomes = biomes;
+        this.entries = entries;
+        this.features = features;
+    }
+
+    /**
+     * Computes the plan for the given {@link Biome Biomes} and {@link Ore Ores} on the common {@link ForkJoinPool}
+     * @param biomes the {@link Biome Biomes} to compute the plan for, in the order the features should be applied
+     * @param ores   the {@link Ore Ores} to compute the plan for
+     * @return the computed plan
+     */
+    @Nonnull
+    static OrePlan compute(@Nonnull List<Biome> biomes, @Nonnull List<Ore> ores) {
+        int size = ores.size();
+        Ore[] oreArray = ores.toArray(new Ore[0]);
+        OreSettings[] settings = new OreSettings[size];
+        BiomeFilter[] filters = new BiomeFilter[size];
+        for (int i = 0; i < size; i++) {
+            settings[i] = oreArray[i].getSettings();
+            filters[i] = settings[i].biomeFilter.compile();
+        }
+        ConcurrentMap<OreEntry, OreEntry> interned = new ConcurrentHashMap<>();
+        List<List<OreEntry>> entries = ForkJoinPool.commonPool().submit(() -> biomes.parallelStream()
+                .map(biome -> {
+                    List<OreEntry> biomeEntries = new ArrayList<>();
+                    OreFeatureConfig.FillerBlockType filler = SimpleOreLib.fillerForBiome(biome);
+                    for (int i = 0; i < size; i++) {
+                        Ore ore = oreArray[i];
+                        if (settings[i].biomeFilter != BiomeFilter.ALL && !filters[i].test(biome)) continue;
+
+                        OreEntry entry = new OreEntry(ore, filler, ore.resolveGenerationState(biome, filler), settings[i]);
+                        OreEntry existing = interned.putIfAbsent(entry, entry);
+                        biomeEntries.add(existing != null ? existing : entry);
+                    }
+                    return Collections.unmodifiableList(biomeEntries);
+                })
+                .collect(Collectors.toList())).join();
+        return of(biomes, entries);
+    }
+
+    /**
+     * Creates the plan for already resolved {@link OreEntry OreEntries}
+     * @param biomes  the {@link Biome Biomes} of the plan, in the order the features should be applied
+     * @param entries the {@link OreEntry OreEntries} of each {@link Biome}; equal entries should be the same instance
+     * @return the plan
+     */
+    @Nonnull
+    static OrePlan of(@Nonnull List<Biome> biomes, @Nonnull List<List<OreEntry>> entries) {
+        Map<List<OreEntry>, ConfiguredFeature<?, ?>> interned = new HashMap<>();
+        List<ConfiguredFeature<?, ?>> features = new ArrayList<>(entries.size());
+        for (List<OreEntry> biomeEntries : entries) {
+            for (OreEntry entry : biomeEntries) {
+                OreVeinGenerator.reserve(entry.config.size);
+            }
+            features.add(interned.computeIfAbsent(biomeEntries, OrePlan::createFeature));
+        }
+        return new OrePlan(Collections.unmodifiableList(new ArrayList<>(biomes)), Collections.unmodifiableList(entries), Collections.unmodifiableList(features));
+    }
+
+    /**
+     * Creates the {@link BatchedOreFeature} for the given {@link OreEntry OreEntries}
+     * @param entries the {@link OreEntry OreEntries} to create the feature for; may be empty
+     * @return the created {@link ConfiguredFeature}
+     */
+    @Nonnull
+    static ConfiguredFeature<?, ?> createFeature(@Nonnull List<OreEntry> entries) {
+        return SimpleOreLib.BATCHED_ORE.withConfiguration(new BatchedOreFeatureConfig(entries)).func_227228_a_(PLACEMENT);
+    }
+
+    /**
+     * Gets the {@link Biome Biomes} of this plan
+     * @return the {@link Biome Biomes} of this plan in the order they are applied
+     */
+    List<Biome> getBiomes() {
+        return biomes;
+    }
+
+    /**
+     * Gets the {@link OreEntry OreEntries} of each {@link Biome} of this plan
+     * @return the {@link OreEntry OreEntries} indexed like {@link OrePlan#getBiomes()}
+     */
+    List<List<OreEntry>> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Gets the {@link ConfiguredFeature ConfiguredFeatures} of each {@link Biome} of this plan
+     * @return the {@link ConfiguredFeature ConfiguredFeatures} indexed like {@link OrePlan#getBiomes()}
+     */
+    List<ConfiguredFeature<?, ?>> getFeatures() {
+        return features;
+    }
+
+    /**
+     * Adds the planned {@link ConfiguredFeature ConfiguredFeatures} to their {@link Biome Biomes}.<br>
+     * This has to be called from the main thread.
+     * @return the applied plan that allows later changes
+     */
+    @Nonnull
+    ActivePlan apply() {
+        return new ActivePlan(this);
+    }
+}
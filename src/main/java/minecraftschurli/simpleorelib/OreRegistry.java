@@ -0,0 +1,73 @@
+package minecraftschurli.simpleorelib;
+
+import net.minecraft.util.ResourceLocation;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The registry of all constructed {@link Ore Ores}.<br>
+ * {@link Ore Ores} are appended to a lock free queue while the mods are constructed in parallel,
+ * and frozen into an immutable snapshot once the ore features are set up.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+final class OreRegistry {
+    /**
+     * Orders the snapshot by registry name, so it does not depend on the order the mods were constructed in
+     */
+    private static final Comparator<Ore> ORDER = Comparator.comparing(Ore::getRegistryName, Comparator.nullsLast(Comparator.<ResourceLocation>naturalOrder()));
+
+    private final Queue<Ore> pending = new ConcurrentLinkedQueue<>();
+    private volatile List<Ore> snapshot = Collections.emptyList();
+    private volatile boolean frozen;
+
+    /**
+     * Adds an {@link Ore} to this registry
+     * @param ore the {@link Ore} to add
+     */
+    void add(@Nonnull Ore ore) {
+        pending.add(ore);
+    }
+
+    /**
+     * Moves all added {@link Ore Ores} into the snapshot returned by {@link OreRegistry#getOres()}.<br>
+     * @return the {@link Ore Ores} that were added since the last call, ordered by registry name
+     */
+    synchronized List<Ore> freeze() {
+        frozen = true;
+        List<Ore> added = new ArrayList<>();
+        for (Ore ore = pending.poll(); ore != null; ore = pending.poll()) {
+            added.add(ore);
+        }
+        if (added.isEmpty()) return Collections.emptyList();
+        added.sort(ORDER);
+        Ore[] ores = snapshot.toArray(new Ore[snapshot.size() + added.size()]);
+        for (int i = 0; i < added.size(); i++) {
+            ores[snapshot.size() + i] = added.get(i);
+        }
+        Arrays.sort(ores, ORDER);
+        snapshot = Collections.unmodifiableList(Arrays.asList(ores));
+        return Collections.unmodifiableList(added);
+    }
+
+    /**
+     * Gets the registered {@link Ore Ores}.<br>
+     * Once frozen this returns the same immutable snapshot until the next freeze, so repeated calls do not allocate.
+     * @return the registered {@link Ore Ores} ordered by registry name
+     */
+    @Nonnull
+    List<Ore> getOres() {
+        if (frozen) return snapshot;
+        List<Ore> ores = new ArrayList<>(pending);
+        ores.sort(ORDER);
+        return Collections.unmodifiableList(ores);
+    }
+}
@@ -0,0 +1,92 @@
+package minecraftschurli.simpleorelib;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import net.minecraft.util.JSONUtils;
+
+import javax.annotation.Nonnull;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * The immutable spawn settings of an {@link Ore}, either as constructed from its {@link Ore.OreSpawnProperties} or with an override applied
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+final class OreSettings {
+    final int veinSize;
+    final int chance;
+    final int minHeight;
+    final int maxHeight;
+    final VeinType veinType;
+    final BiomeFilter biomeFilter;
+
+    /**
+     * @throws IllegalArgumentException if the vein size or chance is negative or the max height is not above the min height
+     */
+    OreSettings(int veinSize, int chance, int minHeight, int maxHeight, @Nonnull VeinType veinType, @Nonnull BiomeFilter biomeFilter) {
+        if (veinSize < 0 || chance < 0) {
+            throw new IllegalArgumentException("The vein size " + veinSize + " and chance " + chance + " must not be negative");
+        }
+        if (maxHeight <= minHeight) {
+            throw new IllegalArgumentException("The max height " + maxHeight + " must be above the min height " + minHeight);
+        }
+        this.veinSize = veinSize;
+        this.chance = chance;
+        this.minHeight = minHeight;
+        this.maxHeight = maxHeight;
+        this.veinType = veinType;
+        this.biomeFilter = biomeFilter;
+    }
+
+    /**
+     * Applies an override to these settings.<br>
+     * The override may contain {@code veinSize}, {@code chance}, {@code minHeight}, {@code maxHeight}, {@code veinType}
+     * and a {@link BiomeFilter#fromJson(com.google.gson.JsonElement, int) biomes} filter; missing keys keep their value.
+     * {@code "biomes": false} disables the {@link Ore}.
+     * @param override the override to apply
+     * @return the overridden settings
+     * @throws JsonParseException if a value is invalid
+     */
+    @Nonnull
+    OreSettings apply(@Nonnull JsonObject override) {
+        int veinSize = JSONUtils.getInt(override, "veinSize", this.veinSize);
+        int chance = JSONUtils.getInt(override, "chance", this.chance);
+        int minHeight = JSONUtils.getInt(override, "minHeight", this.minHeight);
+        int maxHeight = JSONUtils.getInt(override, "maxHeight", this.maxHeight);
+        VeinType veinType = this.veinType;
+        if (override.has("veinType")) {
+            String name = JSONUtils.getString(override, "veinType");
+            try {
+                veinType = VeinType.valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new JsonParseException("Unknown vein type: " + name);
+            }
+        }
+        BiomeFilter biomeFilter = override.has("biomes") ? BiomeFilter.fromJson(override.get("biomes"), 0) : this.biomeFilter;
+        try {
+            return new OreSettings(veinSize, chance, minHeight, maxHeight, veinType, biomeFilter);
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof OreSettings)) return false;
+        OreSettings that = (OreSettings) other;
+        return veinSize == that.veinSize &&
+                chance == that.chance &&
+                minHeight == that.minHeight &&
+                maxHeight == that.maxHeight &&
+                veinType == that.veinType &&
+                biomeFilter.getExpression() == that.biomeFilter.getExpression();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(veinSize, chance, minHeight, maxHeight, veinType, biomeFilter.getExpression());
+    }
+}
@@ -0,0 +1,295 @@
+package minecraftschurli.simpleorelib;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.gen.Heightmap;
+import net.minecraft.world.gen.feature.OreFeatureConfig;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * An allocation free reimplementation of the vanilla {@link net.minecraft.world.gen.feature.OreFeature OreFeature} vein algorithm.<br>
+ * It places exactly the same blocks as the vanilla algorithm for the same {@link Random},
+ * but reuses per thread scratch buffers sized from the largest registered {@link Ore#getVeinSize() vein size}.
+ * {@link OreVeinGenerator#trace} runs the same algorithm without a world, so {@link OreDensityEstimator} measures the veins that are actually placed.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+final class OreVeinGenerator {
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+    private static volatile int reservedSize = 16;
+
+    private OreVeinGenerator() {}
+
+    /**
+     * Makes sure newly created scratch buffers can hold veins of the given size without growing
+     * @param veinSize the largest vein size that will be generated
+     */
+    static void reserve(int veinSize) {
+        if (veinSize > reservedSize) reservedSize = veinSize;
+    }
+
+    /**
+     * Generates a vein like {@link net.minecraft.world.gen.feature.OreFeature#place OreFeature#place}
+     * @param world    the world to generate in
+     * @param rand     the random to generate with
+     * @param pos      the origin of the vein
+     * @param config    the config of the vein
+     * @param heightmap the heightmap the vein has to reach below; vanilla uses {@link Heightmap.Type#OCEAN_FLOOR_WG},
+     *                  which full chunks do not keep, so chunks that are already generated have to use {@link Heightmap.Type#OCEAN_FLOOR}
+     * @param recorder  the {@link OreIndex.Recorder} to record the placed blocks to; {@code null} if they are not recorded
+     * @return the number of placed blocks
+     */
+    static int generate(IWorld world, Random rand, BlockPos pos, OreFeatureConfig config, Heightmap.Type heightmap, @Nullable OreIndex.Recorder recorder) {
+        WorldPlacer placer = SCRATCH.get().placer;
+        placer.world = world;
+        placer.target = config.target.getTargetBlockPredicate();
+        placer.state = config.state;
+        placer.recorder = recorder;
+        try {
+            return generate(world, rand, pos, config.size, heightmap, placer);
+        } finally {
+            placer.world = null;
+            placer.recorder = null;
+        }
+    }
+
+    /**
+     * Traces a vein without a world, passing every position of it to the given {@link Placer}.<br>
+     * This draws the same values as a vein placed into a world that passes the surface check.
+     * @param rand   the random to trace with
+     * @param pos    the origin of the vein
+     * @param size   the vein size
+     * @param placer the {@link Placer} deciding which positions are placed
+     * @return the number of placed blocks
+     */
+    static int trace(Random rand, BlockPos pos, int size, Placer placer) {
+        return generate(null, rand, pos, size, null, placer);
+    }
+
+    private static int generate(@Nullable IWorld world, Random rand, BlockPos pos, int size, @Nullable Heightmap.Type heightmap, Placer placer) {
+        float angle = rand.nextFloat() * (float) Math.PI;
+        float radius = (float) size / 8.0F;
+        int i = MathHelper.ceil(((float) size / 16.0F * 2.0F + 1.0F) / 2.0F);
+        double x1 = (double) ((float) pos.getX() + MathHelper.sin(angle) * radius);
+        double x2 = (double) ((float) pos.getX() - MathHelper.sin(angle) * radius);
+        double z1 = (double) ((float) pos.getZ() + MathHelper.cos(angle) * radius);
+        double z2 = (double) ((float) pos.getZ() - MathHelper.cos(angle) * radius);
+        double y1 = (double) (pos.getY() + rand.nextInt(3) - 2);
+        double y2 = (double) (pos.getY() + rand.nextInt(3) - 2);
+        int minX = pos.getX() - MathHelper.ceil(radius) - i;
+        int minY = pos.getY() - 2 - i;
+        int minZ = pos.getZ() - MathHelper.ceil(radius) - i;
+        int width = 2 * (MathHelper.ceil(radius) + i);
+        int height = 2 * (2 + i);
+
+        if (world == null) {
+            return generate(rand, size, placer, x1, x2, z1, z2, y1, y2, minX, minY, minZ, width, height);
+        }
+        for (int x = minX; x <= minX + width; ++x) {
+            for (int z = minZ; z <= minZ + width; ++z) {
+                if (minY <= world.getHeight(heightmap, x, z)) {
+                    return generate(rand, size, placer, x1, x2, z1, z2, y1, y2, minX, minY, minZ, width, height);
+                }
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Draws the same values from the given {@link Random} as {@link OreVeinGenerator#generate(IWorld, Random, BlockPos, OreFeatureConfig, Heightmap.Type, OreIndex.Recorder) generate}
+     * without placing anything, so skipping a vein does not change the veins generated after it
+     * @param world     the world the vein would be generated in
+     * @param rand      the random the vein would be generated with
+     * @param pos       the origin of the vein
+     * @param config    the config of the vein
+     * @param heightmap the heightmap the vein would have to reach below
+     */
+    static void skip(IWorld world, Random rand, BlockPos pos, OreFeatureConfig config, Heightmap.Type heightmap) {
+        rand.nextFloat();
+        rand.nextInt(3);
+        rand.nextInt(3);
+        int i = MathHelper.ceil(((float) config.size / 16.0F * 2.0F + 1.0F) / 2.0F);
+        int reach = MathHelper.ceil((float) config.size / 8.0F) + i;
+        int minY = pos.getY() - 2 - i;
+        for (int x = pos.getX() - reach; x <= pos.getX() + reach; ++x) {
+            for (int z = pos.getZ() - reach; z <= pos.getZ() + reach; ++z) {
+                if (minY <= world.getHeight(heightmap, x, z)) {
+                    for (int j = 0; j < config.size; ++j) {
+                        rand.nextDouble();
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    private static int generate(Random random, int size, Placer placer, double x1, double x2, double z1, double z2, double y1, double y2, int minX, int minY, int minZ, int width, int height) {
+        int placed = 0;
+        Scratch scratch = SCRATCH.get();
+        long[] visited = scratch.visited(bits(width, height));
+        double[] spheres = scratch.spheres(size * 4);
+        BlockPos.Mutable pos = scratch.pos;
+
+        for (int j = 0; j < size; ++j) {
+            float f = (float) j / (float) size;
+            double x = MathHelper.lerp((double) f, x1, x2);
+            double y = MathHelper.lerp((double) f, y1, y2);
+            double z = MathHelper.lerp((double) f, z1, z2);
+            double d6 = random.nextDouble() * (double) size / 16.0D;
+            double r = ((double) (MathHelper.sin((float) Math.PI * f) + 1.0F) * d6 + 1.0D) / 2.0D;
+            spheres[j * 4] = x;
+            spheres[j * 4 + 1] = y;
+            spheres[j * 4 + 2] = z;
+            spheres[j * 4 + 3] = r;
+        }
+
+        for (int a = 0; a < size - 1; ++a) {
+            if (!(spheres[a * 4 + 3] <= 0.0D)) {
+                for (int b = a + 1; b < size; ++b) {
+                    if (!(spheres[b * 4 + 3] <= 0.0D)) {
+                        double dx = spheres[a * 4] - spheres[b * 4];
+                        double dy = spheres[a * 4 + 1] - spheres[b * 4 + 1];
+                        double dz = spheres[a * 4 + 2] - spheres[b * 4 + 2];
+                        double dr = spheres[a * 4 + 3] - spheres[b * 4 + 3];
+                        if (dr * dr > dx * dx + dy * dy + dz * dz) {
+                            if (dr > 0.0D) {
+                                spheres[b * 4 + 3] = -1.0D;
+                            } else {
+                                spheres[a * 4 + 3] = -1.0D;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int j = 0; j < size; ++j) {
+            double r = spheres[j * 4 + 3];
+            if (!(r < 0.0D)) {
+                double cx = spheres[j * 4];
+                double cy = spheres[j * 4 + 1];
+                double cz = spheres[j * 4 + 2];
+                int startX = Math.max(MathHelper.floor(cx - r), minX);
+                int startY = Math.max(MathHelper.floor(cy - r), minY);
+                int startZ = Math.max(MathHelper.floor(cz - r), minZ);
+                int endX = Math.max(MathHelper.floor(cx + r), startX);
+                int endY = Math.max(MathHelper.floor(cy + r), startY);
+                int endZ = Math.max(MathHelper.floor(cz + r), startZ);
+
+                for (int x = startX; x <= endX; ++x) {
+                    double dx = ((double) x + 0.5D - cx) / r;
+                    if (dx * dx < 1.0D) {
+                        for (int y = startY; y <= endY; ++y) {
+                            double dy = ((double) y + 0.5D - cy) / r;
+                            if (dx * dx + dy * dy < 1.0D) {
+                                for (int z = startZ; z <= endZ; ++z) {
+                                    double dz = ((double) z + 0.5D - cz) / r;
+                                    if (dx * dx + dy * dy + dz * dz < 1.0D) {
+                                        int index = x - minX + (y - minY) * width + (z - minZ) * width * height;
+                                        long mask = 1L << index;
+                                        if ((visited[index >> 6] & mask) == 0) {
+                                            visited[index >> 6] |= mask;
+                                            if (placer.place(pos.setPos(x, y, z))) ++placed;
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return placed;
+    }
+
+    /**
+     * Gets the number of bits needed to mark every position of a vein with the given bounds as visited.<br>
+     * The bounds are inclusive on both ends, which the growable {@link java.util.BitSet} used by vanilla hides.
+     */
+    private static int bits(int width, int height) {
+        return (width + 1) * (height + 1) * (width + 1);
+    }
+
+    /**
+     * Decides whether a block of a traced vein is placed
+     */
+    interface Placer {
+        /**
+         * Places the block of a vein at the given position; every position of a vein is passed once
+         * @param pos the position, only valid during the call
+         * @return {@code true} if a block was placed
+         */
+        boolean place(BlockPos pos);
+    }
+
+    /**
+     * Places the blocks of a vein into a world where the target predicate of the filler accepts the present block
+     */
+    private static final class WorldPlacer implements Placer {
+        private IWorld world;
+        private Predicate<BlockState> target;
+        private BlockState state;
+        @Nullable
+        private OreIndex.Recorder recorder;
+
+        @Override
+        public boolean place(BlockPos pos) {
+            if (!target.test(world.getBlockState(pos))) return false;
+            world.setBlockState(pos, state, 2);
+            if (recorder != null) recorder.record(pos);
+            return true;
+        }
+    }
+
+    /**
+     * The reusable buffers of one thread
+     */
+    private static final class Scratch {
+        private final BlockPos.Mutable pos = new BlockPos.Mutable();
+        private final WorldPlacer placer = new WorldPlacer();
+        private long[] visited;
+        private double[] spheres;
+
+        private Scratch() {
+            int size = reservedSize;
+            int radius = MathHelper.ceil((float) size / 8.0F);
+            int i = MathHelper.ceil(((float) size / 16.0F * 2.0F + 1.0F) / 2.0F);
+            int width = 2 * (radius + i);
+            int height = 2 * (2 + i);
+            this.visited = new long[(bits(width, height) + 63) >> 6];
+            this.spheres = new double[size * 4];
+        }
+
+        /**
+         * Gets a cleared bitset that can hold at least the given number of bits
+         */
+        private long[] visited(int bits) {
+            int words = (bits + 63) >> 6;
+            if (visited.length < words) {
+                visited = new long[words];
+            } else {
+                Arrays.fill(visited, 0, words, 0L);
+            }
+            return visited;
+        }
+
+        /**
+         * Gets a buffer that can hold at least the given number of values; the content is overwritten by the caller
+         */
+        private double[] spheres(int length) {
+            if (spheres.length < length) {
+                spheres = new double[length];
+            }
+            return spheres;
+        }
+    }
+}
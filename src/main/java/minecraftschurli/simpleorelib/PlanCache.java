@@ -0,0 +1,193 @@
+package minecraftschurli.simpleorelib;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.gen.feature.OreFeatureConfig;
+import net.minecraftforge.common.BiomeDictionary;
+import net.minecraftforge.fml.ModList;
+import net.minecraftforge.fml.loading.FMLEnvironment;
+import net.minecraftforge.fml.loading.FMLPaths;
+import net.minecraftforge.fml.loading.moddiscovery.ModInfo;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Persists the resolved {@link OrePlan} in the config directory, so restarts with the same setup skip evaluating the {@link BiomeFilter BiomeFilters}.<br>
+ * The file is keyed by a hash of the mod list, the {@link Biome} registry with the {@link BiomeDictionary} types of every {@link Biome},
+ * the {@link Ore Ores} with the variant every {@link Biome} resolves to and the fillers.
+ * {@link BiomeFilter BiomeFilters} are hashed by their JSON form, but custom predicates and {@link Ore#getGenerationState(Biome)} overrides
+ * are code and cannot be hashed, they are covered by the mod versions. For that reason the cache is only used in production environments.
+ * It can be disabled with {@code -Dsimpleorelib.planCache=false}.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+final class PlanCache {
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("simpleorelib.planCache", "true"));
+    private static final int MAGIC = 0x534F4C50;
+    private static final int FORMAT = 3;
+
+    private PlanCache() {}
+
+    /**
+     * Loads the plan from the cache file if it matches the current setup, otherwise computes it and updates the cache file
+     * @param biomes  the {@link Biome Biomes} to get the plan for
+     * @param ores    the {@link Ore Ores} to get the plan for
+     * @param fillers the filler index used to compute the plan
+     * @return the plan
+     */
+    @Nonnull
+    static OrePlan loadOrCompute(@Nonnull List<Biome> biomes, @Nonnull List<Ore> ores, @Nonnull FillerIndex fillers) {
+        // fillerForBiome and later filler changes read the baked index, whether the plan is loaded or computed
+        fillers.bake();
+        if (!ENABLED || !FMLEnvironment.production) {
+            return OrePlan.compute(biomes, ores);
+        }
+        Path file = FMLPaths.CONFIGDIR.get().resolve(SimpleOreLib.MODID + "-plan.bin");
+        List<OreSettings> settings = new ArrayList<>(ores.size());
+        for (Ore ore : ores) {
+            settings.add(ore.getSettings());
+        }
+        HashCode key = key(biomes, ores, settings, fillers);
+        try {
+            OrePlan plan = read(file, key, biomes, ores, settings);
+            if (plan != null) {
+                SimpleOreLib.LOGGER.debug("Loaded the ore plan from {}", file);
+                return plan;
+            }
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException | RuntimeException e) {
+            SimpleOreLib.LOGGER.warn("Could not read the ore plan from {}", file, e);
+        }
+        OrePlan plan = OrePlan.compute(biomes, ores);
+        try {
+            write(file, key, plan, ores);
+        } catch (IOException e) {
+            SimpleOreLib.LOGGER.warn("Could not write the ore plan to {}", file, e);
+        }
+        return plan;
+    }
+
+    private static HashCode key(List<Biome> biomes, List<Ore> ores, List<OreSettings> settings, FillerIndex fillers) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putInt(FORMAT);
+        List<ModInfo> mods = new ArrayList<>(ModList.get().getMods());
+        mods.sort(Comparator.comparing(ModInfo::getModId));
+        hasher.putInt(mods.size());
+        for (ModInfo mod : mods) {
+            hasher.putUnencodedChars(mod.getModId()).putUnencodedChars(mod.getVersion().toString());
+        }
+        hasher.putInt(biomes.size());
+        for (Biome biome : biomes) {
+            hasher.putUnencodedChars(String.valueOf(biome.getRegistryName()));
+            List<String> types = new ArrayList<>();
+            for (BiomeDictionary.Type type : BiomeDictionary.getTypes(biome)) {
+                types.add(type.getName());
+            }
+            Collections.sort(types);
+            hasher.putInt(types.size());
+            for (String type : types) {
+                hasher.putUnencodedChars(type);
+            }
+        }
+        hasher.putInt(ores.size());
+        for (int i = 0; i < ores.size(); i++) {
+            Ore ore = ores.get(i);
+            OreSettings oreSettings = settings.get(i);
+            hasher.putUnencodedChars(String.valueOf(ore.getRegistryName()))
+                    .putInt(oreSettings.veinSize)
+                    .putInt(oreSettings.chance)
+                    .putInt(oreSettings.minHeight)
+                    .putInt(oreSettings.maxHeight)
+                    .putInt(oreSettings.veinType.ordinal())
+                    .putUnencodedChars(oreSettings.biomeFilter.isSerializable() ? oreSettings.biomeFilter.toJson().toString() : "");
+            ore.hashVariants(hasher);
+        }
+        fillers.hash(hasher);
+        return hasher.hash();
+    }
+
+    @Nullable
+    private static OrePlan read(Path file, HashCode key, List<Biome> biomes, List<Ore> ores, List<OreSettings> settings) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) return null;
+            byte[] hash = new byte[in.readUnsignedByte()];
+            in.readFully(hash);
+            if (!Arrays.equals(hash, key.asBytes())) return null;
+
+            OreFeatureConfig.FillerBlockType[] fillers = new OreFeatureConfig.FillerBlockType[in.readUnsignedShort()];
+            for (int i = 0; i < fillers.length; i++) {
+                fillers[i] = fillerByName(in.readUTF());
+            }
+            if (in.readInt() != biomes.size()) return null;
+            Map<OreEntry, OreEntry> interned = new HashMap<>();
+            List<List<OreEntry>> entries = new ArrayList<>(biomes.size());
+            for (int i = 0; i < biomes.size(); i++) {
+                int count = in.readUnsignedShort();
+                List<OreEntry> biomeEntries = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    int ore = in.readUnsignedShort();
+                    OreFeatureConfig.FillerBlockType filler = fillers[in.readUnsignedShort()];
+                    BlockState state = Block.getStateById(in.readInt());
+                    biomeEntries.add(interned.computeIfAbsent(new OreEntry(ores.get(ore), filler, state, settings.get(ore)), entry -> entry));
+                }
+                entries.add(Collections.unmodifiableList(biomeEntries));
+            }
+            return OrePlan.of(biomes, entries);
+        }
+    }
+
+    private static void write(Path file, HashCode key, OrePlan plan, List<Ore> ores) throws IOException {
+        Map<Ore, Integer> oreIndices = new IdentityHashMap<>();
+        for (int i = 0; i < ores.size(); i++) {
+            oreIndices.put(ores.get(i), i);
+        }
+        Map<OreFeatureConfig.FillerBlockType, Integer> fillerIndices = new LinkedHashMap<>();
+        for (List<OreEntry> biomeEntries : plan.getEntries()) {
+            for (OreEntry entry : biomeEntries) {
+                fillerIndices.putIfAbsent(entry.filler, fillerIndices.size());
+            }
+        }
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            byte[] hash = key.asBytes();
+            out.writeByte(hash.length);
+            out.write(hash);
+            out.writeShort(fillerIndices.size());
+            for (OreFeatureConfig.FillerBlockType filler : fillerIndices.keySet()) {
+                out.writeUTF(filler.name());
+            }
+            out.writeInt(plan.getEntries().size());
+            for (List<OreEntry> biomeEntries : plan.getEntries()) {
+                out.writeShort(biomeEntries.size());
+                for (OreEntry entry : biomeEntries) {
+                    out.writeShort(oreIndices.get(entry.ore));
+                    out.writeShort(fillerIndices.get(entry.filler));
+                    out.writeInt(Block.getStateId(entry.state));
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static OreFeatureConfig.FillerBlockType fillerByName(String name) throws IOException {
+        for (OreFeatureConfig.FillerBlockType filler : OreFeatureConfig.FillerBlockType.values()) {
+            if (filler.name().equals(name)) return filler;
+        }
+        throw new IOException("Unknown filler " + name);
+    }
+}
@@ -0,0 +1,243 @@
+package minecraftschurli.simpleorelib;
+
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.ListNBT;
+import net.minecraft.nbt.StringNBT;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.SharedSeedRandom;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.IChunk;
+import net.minecraft.world.gen.ChunkGenerator;
+import net.minecraft.world.gen.GenerationStage;
+import net.minecraft.world.gen.Heightmap;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraftforge.common.util.Constants;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates {@link Ore Ores} that were added after a chunk was generated.<br>
+ * Every chunk is saved with the names of the {@link Ore Ores} it was generated with.
+ * Chunks saved without that marker are treated as generated with the current {@link Ore Ores}.
+ * When a chunk with missing {@link Ore Ores} is loaded it is queued, and the queue is worked off at the end of every server tick
+ * for at most {@code -Dsimpleorelib.retrogen.budget} milliseconds (default 5), and never past the 50 ms of the tick.
+ * The missing {@link Ore Ores} are placed with the {@link OreEntry OreEntries} of the current plan, so their spawn properties, filters and variants apply.
+ * Until that happened the chunk keeps being saved with its old marker, so chunks that are unloaded or not yet full in the meantime are queued again on their next load.<br>
+ * Retrogen is enabled with {@code -Dsimpleorelib.retrogen=true}; the markers are written and kept either way.
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+final class Retrogen {
+    /**
+     * Whether missing ores are generated in loaded chunks
+     */
+    static final boolean ENABLED = Boolean.getBoolean("simpleorelib.retrogen");
+    private static final long BUDGET = TimeUnit.MILLISECONDS.toNanos(Integer.getInteger("simpleorelib.retrogen.budget", 5));
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final String MARKER = SimpleOreLib.MODID + ":ores";
+    private static final long SALT = 0x5E7206E4L;
+
+    private static final Map<IWorld, Map<Long, Task>> PENDING = new ConcurrentHashMap<>();
+    private static final Queue<Task> QUEUE = new ConcurrentLinkedQueue<>();
+    private static final AtomicLong queued = new AtomicLong();
+    private static final AtomicLong completed = new AtomicLong();
+    private static final AtomicLong deferred = new AtomicLong();
+    private static final AtomicLong nanos = new AtomicLong();
+
+    @Nullable
+    private static List<Ore> markedOres;
+    private static ListNBT marker = new ListNBT();
+    private static long tickStart;
+
+    private Retrogen() {}
+
+    /**
+     * Reads the marker of a loaded chunk and queues the chunk if {@link Ore Ores} are missing
+     * @param world the world of the chunk; {@code null} if it is unknown
+     * @param chunk the loaded chunk
+     * @param data  the saved data of the chunk
+     */
+    static void load(@Nullable IWorld world, @Nonnull IChunk chunk, @Nonnull CompoundNBT data) {
+        if (world == null || !data.contains(MARKER, Constants.NBT.TAG_LIST)) return;
+        if (!chunk.getStatus().isAtLeast(ChunkStatus.FEATURES)) return;
+        ListNBT list = data.getList(MARKER, Constants.NBT.TAG_STRING);
+        Set<ResourceLocation> generated = new HashSet<>();
+        for (int i = 0; i < list.size(); i++) {
+            generated.add(new ResourceLocation(list.getString(i)));
+        }
+        if (missing(generated).isEmpty()) return;
+        Task task = new Task(world, chunk.getPos(), generated, list);
+        if (PENDING.computeIfAbsent(world, key -> new ConcurrentHashMap<>()).putIfAbsent(task.pos.asLong(), task) == null && ENABLED) {
+            QUEUE.add(task);
+            queued.incrementAndGet();
+        }
+    }
+
+    /**
+     * Writes the marker of a saved chunk
+     * @param world the world of the chunk; {@code null} if it is unknown
+     * @param chunk the saved chunk
+     * @param data  the data the chunk is saved to
+     */
+    static void save(@Nullable IWorld world, @Nonnull IChunk chunk, @Nonnull CompoundNBT data) {
+        Map<Long, Task> tasks = world != null ? PENDING.get(world) : null;
+        Task task = tasks != null ? tasks.get(chunk.getPos().asLong()) : null;
+        data.put(MARKER, task != null ? task.marker.copy() : currentMarker().copy());
+    }
+
+    /**
+     * Drops the queued task of an unloaded chunk; it was saved with its old marker and is queued again when it is loaded
+     * @param world the world of the chunk
+     * @param chunk the unloaded chunk
+     */
+    static void unload(@Nullable IWorld world, @Nonnull IChunk chunk) {
+        Map<Long, Task> tasks = world != null ? PENDING.get(world) : null;
+        if (tasks != null) tasks.remove(chunk.getPos().asLong());
+    }
+
+    /**
+     * Drops the queued chunks of an unloaded world
+     * @param world the unloaded world
+     */
+    static void unload(@Nonnull IWorld world) {
+        PENDING.remove(world);
+    }
+
+    /**
+     * Remembers the start of the current server tick
+     */
+    static void startTick() {
+        tickStart = System.nanoTime();
+    }
+
+    /**
+     * Generates the missing {@link Ore Ores} of queued chunks until the budget of this tick is used up
+     */
+    static void tick() {
+        long start = System.nanoTime();
+        long end = start + Math.min(BUDGET, TICK - (start - tickStart));
+        int remaining = QUEUE.size();
+        while (remaining-- > 0 && System.nanoTime() < end) {
+            Task task = QUEUE.poll();
+            if (task == null) break;
+            Map<Long, Task> tasks = PENDING.get(task.world);
+            if (tasks == null || tasks.get(task.pos.asLong()) != task) continue;
+            if (task.world.getChunk(task.pos.x, task.pos.z, ChunkStatus.EMPTY, false) == null) {
+                // no longer in memory, it was saved with its old marker and is queued again on its next load
+                tasks.remove(task.pos.asLong(), task);
+                continue;
+            }
+            if (!neighboursLoaded(task)) {
+                QUEUE.add(task);
+                deferred.incrementAndGet();
+                continue;
+            }
+            long chunkStart = System.nanoTime();
+            generate(task);
+            tasks.remove(task.pos.asLong(), task);
+            task.world.getChunk(task.pos.x, task.pos.z).setModified(true);
+            completed.incrementAndGet();
+            nanos.addAndGet(System.nanoTime() - chunkStart);
+        }
+    }
+
+    /**
+     * Formats the progress and throughput of the retrogen
+     * @return the lines to show
+     */
+    @Nonnull
+    static List<String> report() {
+        long done = completed.get();
+        long time = nanos.get();
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format(Locale.ROOT, "%d chunks queued, %d pending, %d done, %d deferred because the chunk or a neighbour is not fully loaded",
+                queued.get(), QUEUE.size(), done, deferred.get()));
+        if (done > 0) {
+            lines.add(String.format(Locale.ROOT, "%.3f ms per chunk, %.1f chunks per second of retrogen time, budget %d ms per tick",
+                    time / 1_000_000.0 / done, done * 1_000_000_000.0 / time, TimeUnit.NANOSECONDS.toMillis(BUDGET)));
+        }
+        return lines;
+    }
+
+    /**
+     * Checks if the chunk of the given task and its neighbours are full chunks
+     */
+    private static boolean neighboursLoaded(Task task) {
+        for (int x = -1; x <= 1; x++) {
+            for (int z = -1; z <= 1; z++) {
+                if (!task.world.chunkExists(task.pos.x + x, task.pos.z + z)) return false;
+            }
+        }
+        return true;
+    }
+
+    private static void generate(Task task) {
+        Set<ResourceLocation> missing = missing(task.generated);
+        if (missing.isEmpty()) return;
+        BlockPos pos = task.pos.asBlockPos();
+        Biome biome = task.world.getBiome(pos.add(8, 8, 8));
+        List<OreEntry> entries = new ArrayList<>();
+        for (OreEntry entry : SimpleOreLib.entriesForBiome(biome)) {
+            if (missing.contains(entry.ore.getRegistryName())) entries.add(entry);
+        }
+        if (entries.isEmpty()) return;
+        ChunkGenerator<?> generator = ((ServerWorld) task.world.getWorld()).getChunkProvider().getChunkGenerator();
+        SharedSeedRandom random = new SharedSeedRandom();
+        long seed = random.setDecorationSeed(task.world.getSeed(), pos.getX(), pos.getZ());
+        random.setFeatureSeed(seed ^ SALT, 0, GenerationStage.Decoration.UNDERGROUND_ORES.ordinal());
+        SimpleOreLib.BATCHED_ORE.place(task.world, generator, random, pos, new BatchedOreFeatureConfig(entries), Heightmap.Type.OCEAN_FLOOR);
+    }
+
+    private static Set<ResourceLocation> missing(Set<ResourceLocation> generated) {
+        Set<ResourceLocation> missing = new HashSet<>();
+        for (Ore ore : SimpleOreLib.getOres()) {
+            ResourceLocation name = ore.getRegistryName();
+            if (name != null && !generated.contains(name)) missing.add(name);
+        }
+        return missing;
+    }
+
+    /**
+     * Gets the marker for the current {@link Ore Ores}; it is rebuilt whenever the {@link Ore Ores} change
+     */
+    private static synchronized ListNBT currentMarker() {
+        List<Ore> ores = SimpleOreLib.getOres();
+        if (ores != markedOres) {
+            ListNBT list = new ListNBT();
+            for (Ore ore : ores) {
+                if (ore.getRegistryName() != null) list.add(StringNBT.valueOf(ore.getRegistryName().toString()));
+            }
+            marker = list;
+            markedOres = ores;
+        }
+        return marker;
+    }
+
+    /**
+     * A chunk that is missing {@link Ore Ores}
+     */
+    private static final class Task {
+        private final IWorld world;
+        private final ChunkPos pos;
+        private final Set<ResourceLocation> generated;
+        private final ListNBT marker;
+
+        private Task(IWorld world, ChunkPos pos, Set<ResourceLocation> generated, ListNBT marker) {
+            this.world = world;
+            this.pos = pos;
+            this.generated = generated;
+            this.marker = marker;
+        }
+    }
+}
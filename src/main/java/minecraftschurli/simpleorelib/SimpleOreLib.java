@@ -1,24 +1,39 @@
 package minecraftschurli.simpleorelib;
 
-import com.google.common.collect.ImmutableMap;
 import net.minecraft.block.Blocks;
-import net.minecraft.block.pattern.BlockMatcher;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IWorld;
 import net.minecraft.world.biome.Biome;
-import net.minecraft.world.gen.GenerationStage;
-import net.minecraft.world.gen.feature.ConfiguredFeature;
 import net.minecraft.world.gen.feature.Feature;
 import net.minecraft.world.gen.feature.OreFeatureConfig;
-import net.minecraft.world.gen.placement.ConfiguredPlacement;
-import net.minecraft.world.gen.placement.CountRangeConfig;
-import net.minecraft.world.gen.placement.Placement;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.RegistryEvent;
+import net.minecraftforge.event.TagsUpdatedEvent;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.world.ChunkDataEvent;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.eventbus.api.IEventBus;
 import net.minecraftforge.fml.DeferredWorkQueue;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.event.lifecycle.FMLCommonSetupEvent;
+import net.minecraftforge.fml.event.lifecycle.FMLLoadCompleteEvent;
+import net.minecraftforge.fml.event.lifecycle.InterModEnqueueEvent;
+import net.minecraftforge.fml.event.lifecycle.InterModProcessEvent;
+import net.minecraftforge.fml.event.server.FMLServerAboutToStartEvent;
+import net.minecraftforge.fml.event.server.FMLServerStartingEvent;
 import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
 import net.minecraftforge.registries.ForgeRegistries;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * @author Minecraftschurli
@@ -27,17 +42,117 @@ import java.util.*;
 @Mod(SimpleOreLib.MODID)
 public final class SimpleOreLib {
     public static final String MODID = "simpleorelib";
+    static final Logger LOGGER = LogManager.getLogger();
+
+    static final OreRegistry ORES = new OreRegistry();
+
+    /**
+     * The end stone filler, used in every {@link BiomeFilter#THE_END end} {@link net.minecraft.world.biome.Biome Biome}
+     */
+    public static final OreFeatureConfig.FillerBlockType END_STONE = BlockStateMatcher.builder().add(Blocks.END_STONE).buildFiller("END_STONE", "end_stone");
 
-    static final List<Ore> ORES = new ArrayList<>();
+    static final BatchedOreFeature BATCHED_ORE = new BatchedOreFeature();
 
-    public static OreFeatureConfig.FillerBlockType END_STONE = OreFeatureConfig.FillerBlockType.create("END_STONE", "end_stone", new BlockMatcher(Blocks.END_STONE));
+    private static final FillerIndex fillers = new FillerIndex();
 
-    private static final Map<BiomeFilter, OreFeatureConfig.FillerBlockType> fillers = new HashMap<>(new ImmutableMap.Builder<BiomeFilter, OreFeatureConfig.FillerBlockType>().put(BiomeFilter.NETHER, OreFeatureConfig.FillerBlockType.NETHERRACK).put(BiomeFilter.THE_END, END_STONE).build());
+    static {
+        addFiller(BiomeFilter.NETHER, OreFeatureConfig.FillerBlockType.NETHERRACK);
+        addFiller(BiomeFilter.THE_END, END_STONE);
+    }
+
+    private static volatile ActivePlan activePlan;
+
+    private int ticks;
 
 
     public SimpleOreLib() {
         final IEventBus modEventBus = FMLJavaModLoadingContext.get().getModEventBus();
         modEventBus.addListener(this::commonSetup);
+        modEventBus.addListener(this::enqueueIMC);
+        modEventBus.addListener(this::processIMC);
+        modEventBus.addListener(this::loadComplete);
+        modEventBus.addGenericListener(Feature.class, this::registerFeatures);
+        MinecraftForge.EVENT_BUS.addListener(this::serverAboutToStart);
+        MinecraftForge.EVENT_BUS.addListener(this::serverStarting);
+        MinecraftForge.EVENT_BUS.addListener(this::tagsUpdated);
+        MinecraftForge.EVENT_BUS.addListener(this::chunkLoad);
+        MinecraftForge.EVENT_BUS.addListener(this::chunkSave);
+        if (OreMetrics.ENABLED && OreMetrics.LOG_INTERVAL > 0) {
+            MinecraftForge.EVENT_BUS.addListener(this::serverTick);
+        }
+        if (Retrogen.ENABLED) {
+            MinecraftForge.EVENT_BUS.addListener(this::retrogenTick);
+        }
+        MinecraftForge.EVENT_BUS.addListener(this::worldUnload);
+        MinecraftForge.EVENT_BUS.addListener(this::chunkUnload);
+    }
+
+    private void enqueueIMC(final InterModEnqueueEvent event) {
+        //noinspection deprecation
+        DeferredWorkQueue.runLater(SimpleOreLib::oresAdded);
+    }
+
+    private void processIMC(final InterModProcessEvent event) {
+        //noinspection deprecation
+        DeferredWorkQueue.runLater(SimpleOreLib::oresAdded);
+    }
+
+    private void loadComplete(final FMLLoadCompleteEvent event) {
+        //noinspection deprecation
+        DeferredWorkQueue.runLater(SimpleOreLib::oresAdded);
+    }
+
+    private void serverAboutToStart(final FMLServerAboutToStartEvent event) {
+        oresAdded();
+    }
+
+    private void serverStarting(final FMLServerStartingEvent event) {
+        SimpleOreLibCommand.register(event.getCommandDispatcher());
+    }
+
+    private void tagsUpdated(final TagsUpdatedEvent event) {
+        BlockStateMatcher.invalidateAll();
+        FillerSections.invalidateAll();
+    }
+
+    private void serverTick(final TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || ++ticks % OreMetrics.LOG_INTERVAL != 0) return;
+        List<String> lines = OreMetrics.report();
+        if (lines.isEmpty()) return;
+        LOGGER.info("Ore generation profile:");
+        lines.forEach(LOGGER::info);
+    }
+
+    private void chunkLoad(final ChunkDataEvent.Load event) {
+        Retrogen.load(event.getWorld(), event.getChunk(), event.getData());
+        OreIndex.load(event.getWorld(), event.getChunk(), event.getData());
+    }
+
+    private void chunkSave(final ChunkDataEvent.Save event) {
+        Retrogen.save(event.getWorld(), event.getChunk(), event.getData());
+        OreIndex.save(event.getWorld(), event.getChunk(), event.getData());
+    }
+
+    private void worldUnload(final WorldEvent.Unload event) {
+        Retrogen.unload(event.getWorld());
+        OreIndex.unload(event.getWorld());
+    }
+
+    private void chunkUnload(final ChunkEvent.Unload event) {
+        Retrogen.unload(event.getWorld(), event.getChunk());
+        OreIndex.unload(event.getWorld(), event.getChunk());
+    }
+
+    private void retrogenTick(final TickEvent.ServerTickEvent event) {
+        if (event.phase == TickEvent.Phase.START) {
+            Retrogen.startTick();
+        } else {
+            Retrogen.tick();
+        }
+    }
+
+    private void registerFeatures(final RegistryEvent.Register<Feature<?>> event) {
+        event.getRegistry().register(BATCHED_ORE);
     }
 
     private void commonSetup(final FMLCommonSetupEvent event) {
@@ -46,38 +161,144 @@ public final class SimpleOreLib {
     }
 
     private void registerOres() {
-        for (Biome biome : ForgeRegistries.BIOMES) {
-            for (Ore ore : ORES) {
-                if (ore.hasBiomeFilter() && !ore.getBiomeFilter().apply(biome)) continue;
+        synchronized (SimpleOreLib.class) {
+            List<Biome> biomes = new ArrayList<>();
+            ForgeRegistries.BIOMES.forEach(biomes::add);
+            ORES.freeze();
+            OreOverrides.readOrNone(ORES.getOres()).apply(ORES.getOres());
+            activate(PlanCache.loadOrCompute(biomes, ORES.getOres(), fillers));
+        }
+    }
 
-                CountRangeConfig placementConfig = new CountRangeConfig(
-                        ore.getChance(),
-                        ore.getMinHeight(),
-                        ore.getMinHeight(),
-                        ore.getMaxHeight());
+    /**
+     * Applies the given plan to its {@link Biome Biomes} and makes it the plan later {@link Ore Ores}, fillers and reloads are applied to.<br>
+     * This has to be called from the main thread, or before any chunk is generated.
+     *
+     * @param plan the plan to apply
+     * @return the applied plan
+     */
+    static synchronized ActivePlan activate(OrePlan plan) {
+        activePlan = plan.apply();
+        return activePlan;
+    }
 
-                ConfiguredPlacement<CountRangeConfig> placement = Placement.COUNT_RANGE.func_227446_a_(placementConfig);
+    /**
+     * Adds {@link Ore Ores} that were created after {@link SimpleOreLib#registerOres()} to the {@link Biome Biomes} they match.<br>
+     * This runs after each of the later loading phases and before the server starts.
+     */
+    private static synchronized void oresAdded() {
+        if (activePlan == null) return;
+        List<Ore> added = ORES.freeze();
+        if (!added.isEmpty()) {
+            OreOverrides.current().apply(added);
+            activePlan.addOres(added);
+        }
+    }
 
-                OreFeatureConfig featureConfig = new OreFeatureConfig(
-                        fillerForBiome(biome),
-                        ore.getGenerationState(biome),
-                        ore.getVeinSize());
+    /**
+     * Gets all registered {@link Ore Ores}.<br>
+     * The returned {@link List} is an immutable snapshot that is only replaced when new {@link Ore Ores} are set up,
+     * so it is safe to keep and iterate from any thread.
+     *
+     * @return all {@link Ore Ores} ordered by registry name
+     */
+    public static List<Ore> getOres() {
+        return ORES.getOres();
+    }
 
-                ConfiguredFeature<?, ?> feature = Feature.ORE.withConfiguration(featureConfig).func_227228_a_(placement);
+    /**
+     * Registeres a {@link net.minecraft.world.gen.feature.OreFeatureConfig.FillerBlockType} for the given {@link BiomeFilter}.<br>
+     * Fillers added after the ores were set up only update the {@link Biome Biomes} the given {@link BiomeFilter} matches.
+     *
+     * @param filter the {@link BiomeFilter} to register the {@link net.minecraft.world.gen.feature.OreFeatureConfig.FillerBlockType filler} for
+     * @param filler the {@link net.minecraft.world.gen.feature.OreFeatureConfig.FillerBlockType filler} to register
+     */
+    public static void addFiller(BiomeFilter filter, OreFeatureConfig.FillerBlockType filler) {
+        synchronized (SimpleOreLib.class) {
+            if (fillers.add(filter, filler) && activePlan != null) {
+                activePlan.updateFillers(filter);
+            }
+        }
+    }
 
-                biome.addFeature(GenerationStage.Decoration.UNDERGROUND_ORES, feature);
+    /**
+     * Reads the ore overrides from {@code config/simpleorelib-ores.json} again and replaces the features of every {@link Biome} whose ores changed.<br>
+     * The file is read and the changed {@link Biome Biomes} are computed off the server thread, while the current features keep generating;
+     * only swapping the changed features runs on the server thread.
+     * If the ores change in the meantime, the changes are computed again.
+     *
+     * @param server the executor of the server thread
+     * @return the result of the reload, completed exceptionally if the file could not be read or is invalid
+     */
+    static CompletableFuture<ReloadResult> reloadOres(Executor server) {
+        ActivePlan plan = activePlan;
+        if (plan == null) {
+            CompletableFuture<ReloadResult> result = new CompletableFuture<>();
+            result.completeExceptionally(new IllegalStateException("The ores are not set up yet"));
+            return result;
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return OreOverrides.read(OreOverrides.file(), getOres());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
+        }).thenCompose(overrides -> reloadOres(plan, overrides, server));
+    }
+
+    private static CompletableFuture<ReloadResult> reloadOres(ActivePlan plan, OreOverrides overrides, Executor server) {
+        List<Ore> ores = getOres();
+        return CompletableFuture.supplyAsync(() -> plan.prepare(ores, overrides.settingsFor(ores)))
+                .thenComposeAsync(reload -> {
+                    synchronized (SimpleOreLib.class) {
+                        if (plan.apply(reload)) {
+                            overrides.apply(ores);
+                            return CompletableFuture.completedFuture(new ReloadResult(overrides, reload.size()));
+                        }
+                    }
+                    return reloadOres(plan, overrides, server);
+                }, server);
+    }
+
+    /**
+     * The result of {@link SimpleOreLib#reloadOres(Executor)}
+     */
+    static final class ReloadResult {
+        final OreOverrides overrides;
+        final int changedBiomes;
+
+        private ReloadResult(OreOverrides overrides, int changedBiomes) {
+            this.overrides = overrides;
+            this.changedBiomes = changedBiomes;
         }
     }
 
     /**
-     * Registeres a {@link net.minecraft.world.gen.feature.OreFeatureConfig.FillerBlockType} for the given {@link BiomeFilter}
+     * Finds the closest chunk section in which the given {@link Ore} was generated.<br>
+     * This only looks at the per chunk counts recorded during generation, never at the blocks,
+     * so it only knows about loaded chunks, and mined out ores are still reported.
+     * The counts are only recorded when the server is started with {@code -Dsimpleorelib.oreIndex=true}.
      *
-     * @param filter the {@link BiomeFilter} to register the {@link net.minecraft.world.gen.feature.OreFeatureConfig.FillerBlockType filler} for
-     * @param filler the {@link net.minecraft.world.gen.feature.OreFeatureConfig.FillerBlockType filler} to register
+     * @param world  the world to search in
+     * @param pos    the position to search from
+     * @param ore    the {@link Ore} to search for
+     * @param radius the maximum horizontal distance in blocks
+     * @return the center of the closest section; {@code null} if there is none within the radius or the index is disabled
      */
-    public static void addFiller(BiomeFilter filter, OreFeatureConfig.FillerBlockType filler) {
-        fillers.putIfAbsent(filter, filler);
+    @Nullable
+    public static BlockPos locateNearest(IWorld world, BlockPos pos, Ore ore, int radius) {
+        return OreIndex.ENABLED ? OreIndex.locateNearest(world, pos, ore, radius) : null;
+    }
+
+    /**
+     * Gets the {@link OreEntry OreEntries} that currently generate in the given {@link Biome}
+     *
+     * @param biome the {@link Biome} to get the entries for
+     * @return the entries of the given {@link Biome}; an empty list if the ores are not set up yet
+     */
+    static List<OreEntry> entriesForBiome(Biome biome) {
+        ActivePlan plan = activePlan;
+        return plan != null ? plan.getEntries(biome) : Collections.emptyList();
     }
 
     /**
@@ -87,12 +308,6 @@ public final class SimpleOreLib {
      * @return the {@link net.minecraft.world.gen.feature.OreFeatureConfig.FillerBlockType filler} for the given {@link Biome}
      */
     public static OreFeatureConfig.FillerBlockType fillerForBiome(Biome biome) {
-        return fillers.entrySet()
-                .stream()
-                .sorted(Map.Entry.comparingByKey(Comparator.comparingInt(BiomeFilter::getPriority)))
-                .filter(entry -> entry.getKey().test(biome))
-                .findFirst()
-                .map(Map.Entry::getValue)
-                .orElse(OreFeatureConfig.FillerBlockType.NATURAL_STONE);
+        return fillers.get(biome);
     }
 }
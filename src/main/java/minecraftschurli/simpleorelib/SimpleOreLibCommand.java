@@ -0,0 +1,138 @@
+package minecraftschurli.simpleorelib;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.util.text.StringTextComponent;
+import net.minecraft.world.biome.Biome;
+import net.minecraftforge.fml.loading.FMLPaths;
+import net.minecraftforge.registries.ForgeRegistries;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The {@code /simpleorelib} command
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+final class SimpleOreLibCommand {
+    private SimpleOreLibCommand() {}
+
+    /**
+     * Registers the command to the given {@link CommandDispatcher}
+     * @param dispatcher the {@link CommandDispatcher} to register the command to
+     */
+    static void register(CommandDispatcher<CommandSource> dispatcher) {
+        dispatcher.register(Commands.literal(SimpleOreLib.MODID)
+                .requires(source -> source.hasPermissionLevel(2))
+                .then(Commands.literal("profile")
+                        .executes(SimpleOreLibCommand::profile)
+                        .then(Commands.literal("reset")
+                                .executes(SimpleOreLibCommand::resetProfile)))
+                .then(Commands.literal("retrogen")
+                        .executes(SimpleOreLibCommand::retrogen))
+                .then(Commands.literal("reload")
+                        .executes(SimpleOreLibCommand::reload))
+                .then(Commands.literal("density")
+                        .executes(context -> density(context, false))
+                        .then(Commands.literal("csv")
+                                .executes(context -> density(context, true)))));
+    }
+
+    private static int profile(CommandContext<CommandSource> context) {
+        CommandSource source = context.getSource();
+        if (!OreMetrics.ENABLED) {
+            source.sendFeedback(new StringTextComponent("Profiling is disabled, start the server with -Dsimpleorelib.profile=true to enable it"), false);
+            return 0;
+        }
+        List<String> lines = OreMetrics.report();
+        if (lines.isEmpty()) {
+            source.sendFeedback(new StringTextComponent("No ores have been generated yet"), false);
+        }
+        for (String line : lines) {
+            source.sendFeedback(new StringTextComponent(line), false);
+        }
+        return lines.size();
+    }
+
+    private static int retrogen(CommandContext<CommandSource> context) {
+        CommandSource source = context.getSource();
+        if (!Retrogen.ENABLED) {
+            source.sendFeedback(new StringTextComponent("Retrogen is disabled, start the server with -Dsimpleorelib.retrogen=true to enable it"), false);
+            return 0;
+        }
+        List<String> lines = Retrogen.report();
+        for (String line : lines) {
+            source.sendFeedback(new StringTextComponent(line), false);
+        }
+        return lines.size();
+    }
+
+    private static int reload(CommandContext<CommandSource> context) {
+        CommandSource source = context.getSource();
+        source.sendFeedback(new StringTextComponent("Reloading the ore overrides from " + OreOverrides.file()), false);
+        SimpleOreLib.reloadOres(source.getServer()).whenCompleteAsync((result, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                SimpleOreLib.LOGGER.warn("Could not reload the ore overrides", cause);
+                source.sendErrorMessage(new StringTextComponent("Could not reload the ore overrides, the current ores are kept: " + cause.getMessage()));
+                return;
+            }
+            for (String warning : result.overrides.getWarnings()) {
+                source.sendFeedback(new StringTextComponent(warning), false);
+            }
+            source.sendFeedback(new StringTextComponent("Applied " + result.overrides.size() + " ore overrides, replaced the ore features of "
+                    + result.changedBiomes + " biomes"), true);
+        }, source.getServer());
+        return 1;
+    }
+
+    private static int density(CommandContext<CommandSource> context, boolean csv) {
+        CommandSource source = context.getSource();
+        List<Biome> biomes = new ArrayList<>();
+        ForgeRegistries.BIOMES.forEach(biomes::add);
+        List<Ore> ores = SimpleOreLib.getOres();
+        Path file = FMLPaths.GAMEDIR.get().resolve(SimpleOreLib.MODID + "-density" + (csv ? "" : ".json"));
+        source.sendFeedback(new StringTextComponent("Estimating the density of " + ores.size() + " ores"), false);
+        CompletableFuture.supplyAsync(() -> {
+            OreDensityEstimator.Report report = OreDensityEstimator.estimate(biomes, ores, 0L);
+            List<String> lines = new ArrayList<>(report.getWarnings());
+            try {
+                if (csv) {
+                    report.writeCsv(file);
+                } else {
+                    report.writeJson(file);
+                }
+                lines.add("Wrote the ore density report to " + file);
+            } catch (IOException e) {
+                SimpleOreLib.LOGGER.warn("Could not write the ore density report to {}", file, e);
+                lines.add("Could not write the ore density report: " + e.getMessage());
+            }
+            return lines;
+        }).whenCompleteAsync((lines, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                SimpleOreLib.LOGGER.warn("Could not estimate the ore density", cause);
+                source.sendErrorMessage(new StringTextComponent("Could not estimate the ore density: " + cause.getMessage()));
+                return;
+            }
+            for (String line : lines) {
+                source.sendFeedback(new StringTextComponent(line), false);
+            }
+        }, source.getServer());
+        return ores.size();
+    }
+
+    private static int resetProfile(CommandContext<CommandSource> context) {
+        OreMetrics.reset();
+        context.getSource().sendFeedback(new StringTextComponent("Reset the ore generation profile"), true);
+        return 1;
+    }
+}
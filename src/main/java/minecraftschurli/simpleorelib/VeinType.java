@@ -0,0 +1,25 @@
+package minecraftschurli.simpleorelib;
+
+/**
+ * The algorithm used to generate the veins of an {@link Ore}
+ *
+ * @author Minecraftschurli
+ * @version 2020-01-20
+ */
+public enum VeinType {
+    /**
+     * Generates veins with the vanilla {@link net.minecraft.world.gen.feature.Feature#ORE ore feature}.<br>
+     * While the ore index is enabled these veins are generated like {@link VeinType#POOLED}, which places the same blocks.
+     */
+    VANILLA,
+    /**
+     * Generates the same veins as {@link VeinType#VANILLA} but reuses per thread buffers instead of allocating them for every vein
+     */
+    POOLED,
+    /**
+     * Generates large ore bodies spanning many chunks from a noise field instead of single veins.<br>
+     * The {@link Ore#getVeinSize() vein size} is the largest thickness of a body, the {@link Ore#getChance() chance} the percentage
+     * of positions inside a body that become ore (1 to 100), and the height range limits the center of the bodies.
+     */
+    LARGE
+}